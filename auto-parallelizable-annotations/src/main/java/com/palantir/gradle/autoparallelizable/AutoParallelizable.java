@@ -25,7 +25,155 @@ import java.lang.annotation.Target;
 @Target(ElementType.TYPE)
 public @interface AutoParallelizable {
 
+    /** The isolation mode the work items of this task are submitted with. */
+    Isolation isolation() default Isolation.NONE;
+
+    /** The maximum heap size of forked worker processes, eg {@code "2g"}. Requires {@link Isolation#PROCESS}. */
+    String maxHeapSize() default "";
+
+    /** Extra JVM arguments for forked worker processes. Requires {@link Isolation#PROCESS}. */
+    String[] jvmArgs() default {};
+
+    /** The maximum number of work items of this task type that run at once across the build, or 0 for no limit. */
+    int maxConcurrentWorkItems() default 0;
+
+    /**
+     * The heap, in megabytes, that each work item of this task type is expected to use, or 0 for no limit. Work items
+     * wait until their share fits within the maximum heap of the Gradle daemon.
+     */
+    int workItemHeapMb() default 0;
+
+    /**
+     * Runs the action only once per build for tasks of this type whose inputs are identical. The other tasks wait for
+     * it, then copy its {@code @OutputFile} and {@code @OutputDirectory} properties into their own. Requires
+     * {@link Isolation#NONE}.
+     */
+    boolean deduplicate() default false;
+
+    /**
+     * Only copies the properties of {@code Params} that {@code action} or {@code merge} read into each work item, so
+     * Gradle does not isolate the others. Properties that are left out are listed in a compiler note.
+     */
+    boolean pruneUnreadProperties() default false;
+
+    /**
+     * Measures how long each work item of this task type spends being submitted, queued and running, and logs the
+     * averages at the end of the build. Requires {@link Isolation#NONE}.
+     */
+    boolean profileSubmissions() default false;
+
+    /**
+     * Records when and on which thread each work item of this task type runs, and writes a Chrome trace of them to
+     * {@code build/auto-parallelizable/traces} under the root project at the end of the build. Requires
+     * {@link Isolation#NONE}.
+     */
+    boolean traceWorkItems() default false;
+
+    /**
+     * Emits a Java Flight Recorder event for each work item of this task type, carrying its task path, duration and the
+     * number and size of the files in its top level file properties. Costs next to nothing when JFR is not recording.
+     */
+    boolean emitJfrEvents() default false;
+
+    /**
+     * Measures how much each work item of this task type allocates, and the garbage collections and heap in use of the
+     * JVM it runs in, and logs a summary at the end of the build. Works with every {@link Isolation}.
+     */
+    boolean accountAllocations() default false;
+
+    /**
+     * When positive, tasks of this type are batched: the {@code Params} of up to this many tasks are run by a single
+     * work item, through {@code static void action(List<Params>)} if the class declares one. Requires
+     * {@link Isolation#NONE}.
+     */
+    int maxBatchSize() default 0;
+
+    /**
+     * How long queued tasks wait for enough others to fill a batch before a work item runs them, when
+     * {@link #maxBatchSize} is set.
+     */
+    long maxBatchWaitMillis() default 100;
+
+    /**
+     * Annotates the generated task with {@code @CacheableTask}. Every file property of {@code Params} and its
+     * {@code @Nested} types that is not an output must then declare its normalization with {@code @PathSensitive},
+     * {@code @Classpath} or {@code @CompileClasspath}.
+     */
+    boolean cacheable() default false;
+
+    enum Isolation {
+        NONE,
+        CLASSLOADER,
+        PROCESS
+    }
+
+    /**
+     * Marks a parameter of {@code action} that is injected by Gradle, such as {@code ExecOperations}. A
+     * {@code Function<File, ByteBuffer>} parameter instead gets read-only memory-mapped views of files, mapped once for
+     * every work item of the build that reads them. Those buffers must not be used after {@code action} returns.
+     * Requires {@link Isolation#NONE}.
+     */
     @Retention(RetentionPolicy.SOURCE)
     @Target(ElementType.PARAMETER)
     @interface Inject {}
+
+    /**
+     * Splits a {@code ConfigurableFileCollection} or {@code ListProperty} in {@code Params} into one chunk per
+     * available worker, submitting a separate work item for each chunk.
+     */
+    @Retention(RetentionPolicy.SOURCE)
+    @Target(ElementType.METHOD)
+    @interface Shard {
+        /**
+         * Corrects the cost of each item by how long its chunk took in previous runs of the task, compared to the
+         * chunk's share of the estimated cost. Items that have not run yet keep their cost. Corrections are recorded
+         * in the task's temporary directory.
+         */
+        boolean adaptive() default false;
+    }
+
+    /**
+     * Marks the {@code File} parameter of {@code action} that receives a directory private to the current shard, whose
+     * contents are passed to the {@code merge} method once every shard has finished.
+     */
+    @Retention(RetentionPolicy.SOURCE)
+    @Target(ElementType.PARAMETER)
+    @interface ShardOutput {}
+
+    /**
+     * Marks a {@code DirectoryProperty} in {@code Params} that holds a cache of shard outputs, keyed by a hash of each
+     * work item's inputs. When set, a work item whose inputs are already in the cache copies the cached shard output
+     * instead of running {@code action}. Requires a {@code merge} method.
+     */
+    @Retention(RetentionPolicy.SOURCE)
+    @Target(ElementType.METHOD)
+    @interface WorkItemCache {}
+
+    /**
+     * Marks a {@code static R name(K key)} method of the class as the factory of expensive objects, such as parsers or
+     * compiled templates, that work items share for the rest of the build. The objects must be thread-safe, as work
+     * items running in parallel use them at the same time. Requires {@link Isolation#NONE}.
+     */
+    @Retention(RetentionPolicy.SOURCE)
+    @Target(ElementType.METHOD)
+    @interface SharedResource {
+        /** How many objects are kept, the least recently used being evicted first. */
+        int maxSize() default 16;
+    }
+
+    /**
+     * Marks a {@code Function<K, R>} parameter of {@code action} that returns the objects of the {@link SharedResource}
+     * method of the same name, building each one only once per key while it is kept.
+     */
+    @Retention(RetentionPolicy.SOURCE)
+    @Target(ElementType.PARAMETER)
+    @interface Shared {}
+
+    /**
+     * Adds a {@code ConfigurableFileCollection} in {@code Params} to the classpath of the isolated worker. Requires an
+     * isolation mode other than {@link Isolation#NONE}.
+     */
+    @Retention(RetentionPolicy.SOURCE)
+    @Target(ElementType.METHOD)
+    @interface WorkerClasspath {}
 }
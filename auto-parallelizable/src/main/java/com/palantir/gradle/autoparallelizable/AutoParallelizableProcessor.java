@@ -19,19 +19,67 @@ package com.palantir.gradle.autoparallelizable;
 import com.google.auto.common.MoreElements;
 import com.google.auto.common.MoreTypes;
 import com.google.auto.service.AutoService;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
-import com.google.common.collect.Sets;
+import com.palantir.gradle.autoparallelizable.AutoParallelizable.Isolation;
 import com.squareup.javapoet.AnnotationSpec;
 import com.squareup.javapoet.ClassName;
 import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.FieldSpec;
 import com.squareup.javapoet.MethodSpec;
 import com.squareup.javapoet.ParameterizedTypeName;
 import com.squareup.javapoet.TypeName;
 import com.squareup.javapoet.TypeSpec;
+import com.squareup.javapoet.TypeVariableName;
+import com.squareup.javapoet.WildcardTypeName;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.RuntimeMXBean;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Properties;
+import java.util.Queue;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import javax.annotation.processing.AbstractProcessor;
@@ -52,17 +100,61 @@ import javax.tools.Diagnostic.Kind;
 @AutoService(Processor.class)
 public final class AutoParallelizableProcessor extends AbstractProcessor {
 
-    private static final Set<String> SETTABLE_PROPERTY_CLASSES = Set.of(
-            "org.gradle.api.provider.Property",
-            "org.gradle.api.provider.HasMultipleValues",
-            "org.gradle.api.provider.MapProperty",
-            "org.gradle.api.file.ConfigurableFileCollection");
+    /** When true, a JMH benchmark skeleton is generated for each {@code @AutoParallelizable} class. */
+    static final String BENCHMARKS_OPTION = "autoparallelizable.benchmarks";
+
+    /** When false, generated files are written as JavaPoet prints them, skipping palantir-java-format. */
+    static final String FORMAT_OPTION = "autoparallelizable.format";
+
+    private static final Set<String> FILE_TYPES = Set.of(
+            "java.io.File",
+            "java.nio.file.Path",
+            "org.gradle.api.file.ConfigurableFileCollection",
+            "org.gradle.api.file.ConfigurableFileTree",
+            "org.gradle.api.file.Directory",
+            "org.gradle.api.file.DirectoryProperty",
+            "org.gradle.api.file.FileCollection",
+            "org.gradle.api.file.FileTree",
+            "org.gradle.api.file.RegularFile",
+            "org.gradle.api.file.RegularFileProperty");
+
+    /** Annotations that either declare how a file input is normalized, or make the property not a file input. */
+    private static final Set<String> NORMALIZATION_ANNOTATIONS = Set.of(
+            "org.gradle.api.tasks.PathSensitive",
+            "org.gradle.api.tasks.Classpath",
+            "org.gradle.api.tasks.CompileClasspath",
+            "org.gradle.api.tasks.OutputFile",
+            "org.gradle.api.tasks.OutputFiles",
+            "org.gradle.api.tasks.OutputDirectory",
+            "org.gradle.api.tasks.OutputDirectories",
+            "org.gradle.api.tasks.LocalState",
+            "org.gradle.api.tasks.Destroys",
+            "org.gradle.api.tasks.Internal",
+            "org.gradle.api.tasks.Nested");
+
+    /** Annotations of properties that are not inputs of a work item, so must not change its key. */
+    private static final Set<String> NON_INPUT_ANNOTATIONS = Set.of(
+            "org.gradle.api.tasks.OutputFile",
+            "org.gradle.api.tasks.OutputFiles",
+            "org.gradle.api.tasks.OutputDirectory",
+            "org.gradle.api.tasks.OutputDirectories",
+            "org.gradle.api.tasks.LocalState",
+            "org.gradle.api.tasks.Destroys",
+            "org.gradle.api.tasks.Internal");
+
+    private SettableProperties settableProperties;
+    private GeneratedSources generatedSources;
 
     @Override
     public Set<String> getSupportedAnnotationTypes() {
         return Set.of(AutoParallelizable.class.getCanonicalName());
     }
 
+    @Override
+    public Set<String> getSupportedOptions() {
+        return Set.of(BENCHMARKS_OPTION, FORMAT_OPTION);
+    }
+
     @Override
     public SourceVersion getSupportedSourceVersion() {
         return SourceVersion.latestSupported();
@@ -74,9 +166,16 @@ public final class AutoParallelizableProcessor extends AbstractProcessor {
             return false;
         }
 
-        roundEnv.getElementsAnnotatedWith(AutoParallelizable.class).forEach(element -> {
-            paralleliseTask((TypeElement) element);
-        });
+        settableProperties = new SettableProperties(processingEnv);
+        generatedSources = new GeneratedSources(processingEnv.getFiler(), formatEnabled());
+
+        try {
+            roundEnv.getElementsAnnotatedWith(AutoParallelizable.class).forEach(element -> {
+                paralleliseTask((TypeElement) element);
+            });
+        } finally {
+            generatedSources.flush();
+        }
 
         return false;
     }
@@ -94,6 +193,66 @@ public final class AutoParallelizableProcessor extends AbstractProcessor {
             return;
         }
 
+        if (!verifyShardedProperty(params)) {
+            return;
+        }
+
+        if (!verifyIncrementalProperty(typeElement, params)) {
+            return;
+        }
+
+        if (!verifyMergeMethod(typeElement, params)) {
+            return;
+        }
+
+        if (!verifyCostMethod(typeElement, params)) {
+            return;
+        }
+
+        if (!verifyShortcutMethods(typeElement, params)) {
+            return;
+        }
+
+        if (!verifyWorkItemCache(typeElement, params)) {
+            return;
+        }
+
+        if (!verifyDeduplication(typeElement, params)) {
+            return;
+        }
+
+        if (!verifyBenchmarks(typeElement)) {
+            return;
+        }
+
+        if (!verifyIsolation(typeElement, params)) {
+            return;
+        }
+
+        if (!verifyCacheability(typeElement, params)) {
+            return;
+        }
+
+        if (!verifyWorkLimits(typeElement)) {
+            return;
+        }
+
+        if (!verifyProfiling(typeElement)) {
+            return;
+        }
+
+        if (!verifyBatching(typeElement, params)) {
+            return;
+        }
+
+        if (!verifySharedResources(typeElement)) {
+            return;
+        }
+
+        if (!verifyMappedFiles(typeElement)) {
+            return;
+        }
+
         String packageName = processingEnv
                 .getElementUtils()
                 .getPackageOf(typeElement)
@@ -102,14 +261,76 @@ public final class AutoParallelizableProcessor extends AbstractProcessor {
 
         ClassName workParamsClassName = ClassName.get(packageName, typeElement.getSimpleName() + "WorkParams");
         ClassName workActionClassName = ClassName.get(packageName, typeElement.getSimpleName() + "WorkAction");
+        ClassName mergeWorkActionClassName =
+                ClassName.get(packageName, typeElement.getSimpleName() + "MergeWorkAction");
+
+        Emitter emitter = new Emitter(generatedSources, packageName, typeElement);
+
+        Optional<ExecutableElement> mergeMethod = findMethodsNamed(typeElement, "merge").stream().findFirst();
+        Optional<ExecutableElement> adaptiveProperty = findShardedProperties(params).stream()
+                .filter(AutoParallelizableProcessor::isAdaptive)
+                .findFirst();
+
+        // Batched tasks only submit the work items of their batches
+        if (!isBatched(typeElement)) {
+            emitWorkParams(
+                    emitter,
+                    typeElement,
+                    params,
+                    mergeMethod.isPresent(),
+                    adaptiveProperty.isPresent(),
+                    workParamsClassName);
+
+            emitWorkAction(emitter, typeElement, params, workParamsClassName);
+        }
+
+        mergeMethod.ifPresent(merge ->
+                emitMergeWorkAction(emitter, typeElement, merge, mergeWorkActionClassName, workParamsClassName));
+
+        emitTaskImpl(
+                emitter, typeElement, params, workActionClassName, mergeMethod.map(_merge -> mergeWorkActionClassName));
+
+        if (hasWorkLimits(typeElement)) {
+            emitWorkLimiter(emitter, typeElement);
+        }
+
+        if (typeElement.getAnnotation(AutoParallelizable.class).deduplicate()) {
+            emitDeduplicator(emitter, typeElement);
+        }
+
+        if (isProfiled(typeElement)) {
+            emitSubmissionProfiler(emitter, typeElement);
+        }
+
+        if (isTraced(typeElement)) {
+            emitTraceRecorder(emitter, typeElement);
+        }
+
+        if (emitsJfrEvents(typeElement)) {
+            emitWorkItemEvent(emitter, typeElement);
+        }
+
+        if (accountsAllocations(typeElement)) {
+            emitAllocationSampler(emitter, typeElement);
+            emitAllocationReport(emitter, typeElement);
+        }
 
-        Emitter emitter = new Emitter(processingEnv.getFiler(), packageName, typeElement);
+        if (isBatched(typeElement)) {
+            emitBatchWork(emitter, typeElement);
+            emitBatcher(emitter, typeElement, params);
+        }
 
-        emitWorkParams(emitter, params, workParamsClassName);
+        if (hasSharedResources(typeElement)) {
+            emitSharedResources(emitter, typeElement);
+        }
 
-        emitWorkAction(emitter, typeElement, workParamsClassName);
+        if (mapsFiles(typeElement)) {
+            emitMappedFiles(emitter, typeElement);
+        }
 
-        emitTaskImpl(emitter, typeElement, params, workActionClassName);
+        if (benchmarksEnabled()) {
+            emitBenchmark(emitter, typeElement, params);
+        }
     }
 
     private Optional<TypeElement> verifyParamsElement(TypeElement typeElement) {
@@ -176,6 +397,8 @@ public final class AutoParallelizableProcessor extends AbstractProcessor {
 
         List<? extends VariableElement> remainingParameters = action.getParameters().stream()
                 .filter(actionParameter -> !isSameType(actionParameter, params))
+                .filter(actionParameter -> !isShardOutput(actionParameter))
+                .filter(actionParameter -> !isShared(actionParameter))
                 .collect(Collectors.toList());
         for (VariableElement remainingParameter : remainingParameters) {
             boolean hasInjectAnnotation = isInjectable(remainingParameter);
@@ -187,6 +410,21 @@ public final class AutoParallelizableProcessor extends AbstractProcessor {
             }
         }
 
+        List<? extends VariableElement> shardOutputParameters = action.getParameters().stream()
+                .filter(AutoParallelizableProcessor::isShardOutput)
+                .collect(Collectors.toList());
+        if (shardOutputParameters.size() > 1) {
+            error(action, "The 'action' method must have at most one @AutoParallelizable.ShardOutput argument");
+            successful = false;
+        }
+
+        for (VariableElement shardOutputParameter : shardOutputParameters) {
+            if (!isOfType(shardOutputParameter.asType(), File.class.getCanonicalName())) {
+                error(shardOutputParameter, "@AutoParallelizable.ShardOutput arguments must be of type File");
+                successful = false;
+            }
+        }
+
         if (!isPackagePrivate(action)) {
             error(action, "The 'action' method must be package-private");
             successful = false;
@@ -200,178 +438,3733 @@ public final class AutoParallelizableProcessor extends AbstractProcessor {
         return successful;
     }
 
-    private static boolean isInjectable(VariableElement parameter) {
-        return MoreElements.isAnnotationPresent(parameter, AutoParallelizable.Inject.class);
-    }
+    private boolean verifyShardedProperty(TypeElement params) {
+        List<ExecutableElement> nestedShardedProperties = findNestedProperties(params, new HashSet<>()).stream()
+                .filter(property -> !property.getEnclosingElement().equals(params))
+                .filter(property -> property.getAnnotation(AutoParallelizable.Shard.class) != null)
+                .collect(Collectors.toList());
 
-    private static boolean isNested(Element element) {
-        return MoreElements.isAnnotationPresent(element, "org.gradle.api.tasks.Nested");
-    }
+        if (!nestedShardedProperties.isEmpty()) {
+            nestedShardedProperties.forEach(nestedShardedProperty -> error(
+                    nestedShardedProperty,
+                    "@AutoParallelizable.Shard is only supported on top-level Params properties"));
+            return false;
+        }
 
-    private static List<ExecutableElement> findActionMethod(TypeElement typeElement) {
-        return typeElement.getEnclosedElements().stream()
-                .filter(subElement -> subElement.getKind().equals(ElementKind.METHOD))
-                .map(ExecutableElement.class::cast)
-                .filter(element -> element.getSimpleName().toString().equals("action"))
-                .collect(Collectors.toList());
-    }
+        List<ExecutableElement> shardedProperties = findShardedProperties(params);
 
-    private boolean isSameType(Element first, Element second) {
-        return processingEnv.getTypeUtils().isSameType(first.asType(), second.asType());
-    }
+        if (shardedProperties.size() > 1) {
+            shardedProperties.forEach(shardedProperty -> error(
+                    shardedProperty, "At most one Params property can be annotated with @AutoParallelizable.Shard"));
+            return false;
+        }
 
-    private boolean isPackagePrivate(Element element) {
-        Set<Modifier> modifiers = element.getModifiers();
+        boolean successful = true;
 
-        return !(modifiers.contains(Modifier.PUBLIC)
-                || modifiers.contains(Modifier.PRIVATE)
-                || modifiers.contains(Modifier.PROTECTED));
+        for (ExecutableElement shardedProperty : shardedProperties) {
+            if (!isFileCollection(shardedProperty.getReturnType())
+                    && !isListProperty(shardedProperty.getReturnType())) {
+                error(
+                        shardedProperty,
+                        "@AutoParallelizable.Shard can only be used on ConfigurableFileCollection or ListProperty "
+                                + "properties");
+                successful = false;
+            }
+        }
+
+        return successful;
     }
 
-    private void emitWorkParams(Emitter emitter, TypeElement params, ClassName workParamsClassName) {
-        TypeSpec workParamsType = TypeSpec.interfaceBuilder(workParamsClassName)
-                .addSuperinterface(ClassName.get("org.gradle.workers", "WorkParameters"))
-                .addSuperinterface(params.asType())
-                .build();
+    private boolean verifyIncrementalProperty(TypeElement typeElement, TypeElement params) {
+        List<ExecutableElement> incrementalProperties = findIncrementalProperties(params);
 
-        emitter.emit(workParamsType);
-    }
+        if (incrementalProperties.isEmpty()) {
+            return true;
+        }
 
-    private void emitWorkAction(Emitter emitter, TypeElement typeElement, ClassName workParamsClassName) {
-        ExecutableElement actionMethod = Iterables.getOnlyElement(findActionMethod(typeElement));
-        List<MethodSpec> injectableMethods = actionMethod.getParameters().stream()
-                .filter(AutoParallelizableProcessor::isInjectable)
-                .map(injectable ->
-                        injectMethod(ClassName.get(injectable.asType()), getMethodNameBasedOnType(injectable)))
-                .collect(Collectors.toList());
+        if (incrementalProperties.size() > 1) {
+            incrementalProperties.forEach(incrementalProperty ->
+                    error(incrementalProperty, "At most one Params property can be annotated with @Incremental"));
+            return false;
+        }
 
-        MethodSpec constructor = MethodSpec.constructorBuilder()
-                .addAnnotation(AnnotationSpec.builder(SuppressWarnings.class)
-                        .addMember("value", "$S", "RedundantModifier")
-                        .build())
-                .addModifiers(Modifier.PUBLIC)
-                .build();
+        ExecutableElement incrementalProperty = incrementalProperties.get(0);
 
-        String format = actionMethod.getParameters().stream()
-                .map(parameter ->
-                        isInjectable(parameter) ? getMethodNameBasedOnType(parameter) + "()" : "getParameters()")
-                .collect(Collectors.joining(", ", "$T.action(", ");"));
+        boolean successful = true;
 
-        MethodSpec workActionExecute = MethodSpec.methodBuilder("execute")
-                .addAnnotation(Override.class)
-                .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
-                .addCode(CodeBlock.builder().add(format, typeElement.asType()).build())
-                .build();
+        if (!isFileCollection(incrementalProperty.getReturnType())) {
+            error(incrementalProperty, "@Incremental can only be used on ConfigurableFileCollection properties");
+            successful = false;
+        }
 
-        TypeSpec workActionType = TypeSpec.classBuilder(typeElement.getSimpleName() + "WorkAction")
-                .addModifiers(Modifier.ABSTRACT)
-                .addSuperinterface(ParameterizedTypeName.get(
-                        ClassName.get("org.gradle.workers", "WorkAction"), workParamsClassName))
-                .addMethods(injectableMethods)
-                .addMethod(constructor)
-                .addMethod(workActionExecute)
-                .build();
+        List<ExecutableElement> shardedProperties = findShardedProperties(params);
+        if (!shardedProperties.isEmpty() && !shardedProperties.contains(incrementalProperty)) {
+            error(
+                    incrementalProperty,
+                    "The @Incremental property must also be the @AutoParallelizable.Shard property when both are used");
+            successful = false;
+        }
 
-        emitter.emit(workActionType);
-    }
+        List<ExecutableElement> removeOutputsMethods = findMethodsNamed(typeElement, "removeOutputs");
+        if (removeOutputsMethods.isEmpty()) {
+            error(
+                    typeElement,
+                    "There must be a 'static void removeOutputs(Params, Set<File>)' method that removes the outputs "
+                            + "of deleted @Incremental inputs");
+            return false;
+        }
 
-    private static String getMethodNameBasedOnType(VariableElement injectable) {
-        return "get" + MoreTypes.asElement(injectable.asType()).getSimpleName();
+        ExecutableElement removeOutputs = removeOutputsMethods.get(0);
+
+        if (!removeOutputs.getModifiers().contains(Modifier.STATIC)
+                || !removeOutputs.getReturnType().getKind().equals(TypeKind.VOID)
+                || removeOutputs.getParameters().size() != 2
+                || !isSameType(removeOutputs.getParameters().get(0), params)
+                || !removeOutputs.getParameters().get(1).asType().toString().equals("java.util.Set<java.io.File>")) {
+            error(removeOutputs, "The 'removeOutputs' method must be 'static void removeOutputs(Params, Set<File>)'");
+            successful = false;
+        }
+
+        if (!isPackagePrivate(removeOutputs)) {
+            error(removeOutputs, "The 'removeOutputs' method must be package-private");
+            successful = false;
+        }
+
+        return successful;
     }
 
-    private void emitTaskImpl(
-            Emitter emitter, TypeElement typeElement, TypeElement params, ClassName workActionClassName) {
-        MethodSpec workerExecutor =
-                injectMethod(ClassName.get("org.gradle.workers", "WorkerExecutor"), "getWorkerExecutor");
+    private boolean verifyMergeMethod(TypeElement typeElement, TypeElement params) {
+        ExecutableElement action = Iterables.getOnlyElement(findActionMethod(typeElement));
+        List<ExecutableElement> possibleMerges = findMethodsNamed(typeElement, "merge");
 
-        CodeBlock.Builder paramsSetters = CodeBlock.builder()
-                .add("$N().noIsolation().submit($T.class, params -> {", workerExecutor, workActionClassName)
-                .indent();
+        if (possibleMerges.isEmpty()) {
+            if (hasShardOutput(action)) {
+                error(action, "@AutoParallelizable.ShardOutput arguments can only be used with a 'merge' method");
+                return false;
+            }
+            return true;
+        }
 
-        handleParamsLikeElement(paramsSetters, "params", "this", params);
+        ExecutableElement merge = possibleMerges.get(0);
 
-        MethodSpec execute = MethodSpec.methodBuilder("execute")
-                .addAnnotation(ClassName.get("org.gradle.api.tasks", "TaskAction"))
-                .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
-                .addCode(paramsSetters.unindent().add("});").build())
-                .build();
+        long numberOfParamsArguments = merge.getParameters().stream()
+                .filter(parameter -> isSameType(parameter, params))
+                .count();
+        long numberOfShardOutputsArguments = merge.getParameters().stream()
+                .filter(AutoParallelizableProcessor::isListOfFiles)
+                .count();
 
-        TypeSpec taskImplType = TypeSpec.classBuilder(typeElement.getSimpleName() + "TaskImpl")
-                .addModifiers(Modifier.ABSTRACT)
-                .superclass(ClassName.get("org.gradle.api", "DefaultTask"))
-                .addSuperinterface(ClassName.get(params))
-                .addMethod(workerExecutor)
-                .addMethod(execute)
-                .build();
+        boolean successful = true;
 
-        emitter.emit(taskImplType);
-    }
+        if (!merge.getModifiers().contains(Modifier.STATIC)
+                || !merge.getReturnType().getKind().equals(TypeKind.VOID)
+                || numberOfParamsArguments != 1
+                || numberOfShardOutputsArguments != 1) {
+            error(merge, "The 'merge' method must be 'static void merge(Params, List<File>)'");
+            successful = false;
+        }
 
-    private void handleParamsLikeElement(
-            CodeBlock.Builder builder, String writerContext, String readerContext, TypeElement paramsLikeElement) {
-        paramsLikeElement.getEnclosedElements().stream()
-                .filter(element -> element.getKind().equals(ElementKind.METHOD))
-                .map(ExecutableElement.class::cast)
-                .forEach(possibleMethod -> {
-                    if (possibleMethod.getModifiers().contains(Modifier.DEFAULT)
-                            || possibleMethod.getModifiers().contains(Modifier.PRIVATE)
-                            || !possibleMethod.getParameters().isEmpty()
-                            || (!isNested(possibleMethod) && !returnsSettableProperty(possibleMethod))) {
-                        return;
-                    }
+        for (VariableElement parameter : merge.getParameters()) {
+            if (!isSameType(parameter, params) && !isListOfFiles(parameter) && !isInjectable(parameter)) {
+                error(
+                        parameter,
+                        "Any non 'Param' annotation must be marked with the @AutoParallelizable.Inject annotation");
+                successful = false;
+            }
+        }
 
-                    if (isNested(possibleMethod) && !returnsSettableProperty(possibleMethod)) {
-                        TypeElement nestedParamsLikeElement = MoreTypes.asTypeElement(possibleMethod.getReturnType());
-                        String newContextSuffix = possibleMethod.getSimpleName().toString() + "()";
-                        handleParamsLikeElement(
-                                builder,
-                                writerContext + "." + newContextSuffix,
-                                readerContext + "." + newContextSuffix,
-                                nestedParamsLikeElement);
-                        return;
-                    }
+        if (!isPackagePrivate(merge)) {
+            error(merge, "The 'merge' method must be package-private");
+            successful = false;
+        }
 
-                    Name simpleName = possibleMethod.getSimpleName();
+        if (!merge.getThrownTypes().isEmpty()) {
+            error(merge, "The 'merge' method must not throw any exceptions");
+            successful = false;
+        }
 
-                    String returnType = possibleMethod.getReturnType().toString();
+        if (findShardedProperties(params).isEmpty()) {
+            error(merge, "The 'merge' method can only be used with an @AutoParallelizable.Shard property");
+            successful = false;
+        }
 
-                    String setterMethod = "set";
+        if (!findIncrementalProperties(params).isEmpty()) {
+            error(merge, "The 'merge' method cannot be used with @Incremental properties");
+            successful = false;
+        }
 
-                    if (returnType.endsWith("ConfigurableFileCollection")) {
-                        setterMethod = "from";
-                    }
+        if (!hasShardOutput(action)) {
+            error(action, "The 'action' method must have an @AutoParallelizable.ShardOutput File argument to merge");
+            successful = false;
+        }
 
-                    builder.add(
-                            "$L.$L().$L($L.$L());", writerContext, simpleName, setterMethod, readerContext, simpleName);
-                });
+        return successful;
     }
 
-    private boolean returnsSettableProperty(ExecutableElement method) {
-        Set<TypeElement> settablePropertyElements = SETTABLE_PROPERTY_CLASSES.stream()
-                .map(className -> processingEnv.getElementUtils().getTypeElement(className))
-                .collect(Collectors.toSet());
-        Set<TypeElement> returnTypeHierarchyElements = allSuperTypeElements(method.getReturnType());
-        return !Sets.intersection(settablePropertyElements, returnTypeHierarchyElements)
-                .isEmpty();
-    }
+    /**
+     * {@code skip} and {@code runInline} are evaluated on the task thread, against the properties of the task itself,
+     * before anything is submitted.
+     */
+    private boolean verifyShortcutMethods(TypeElement typeElement, TypeElement params) {
+        boolean successful = true;
 
-    private Set<TypeElement> allSuperTypeElements(TypeMirror type) {
-        return Stream.concat(
-                        Stream.of(MoreTypes.asTypeElement(type)),
-                        processingEnv.getTypeUtils().directSupertypes(type).stream()
-                                .flatMap(supertype -> allSuperTypeElements(supertype).stream()))
-                .collect(Collectors.toSet());
-    }
+        for (String name : List.of("skip", "runInline")) {
+            for (ExecutableElement shortcut : findMethodsNamed(typeElement, name)) {
+                if (!shortcut.getModifiers().contains(Modifier.STATIC)
+                        || !shortcut.getReturnType().getKind().equals(TypeKind.BOOLEAN)
+                        || shortcut.getParameters().size() != 1
+                        || !isSameType(shortcut.getParameters().get(0), params)) {
+                    error(shortcut, "The '" + name + "' method must be 'static boolean " + name + "(Params)'");
+                    successful = false;
+                }
 
-    private static MethodSpec injectMethod(TypeName returns, String methodName) {
-        return MethodSpec.methodBuilder(methodName)
-                .addAnnotation(ClassName.get("javax.inject", "Inject"))
-                .addModifiers(Modifier.PROTECTED, Modifier.ABSTRACT)
-                .returns(returns)
-                .build();
+                if (!isPackagePrivate(shortcut)) {
+                    error(shortcut, "The '" + name + "' method must be package-private");
+                    successful = false;
+                }
+
+                if (!shortcut.getThrownTypes().isEmpty()) {
+                    error(shortcut, "The '" + name + "' method must not throw any exceptions");
+                    successful = false;
+                }
+
+                if (!findIncrementalProperties(params).isEmpty()) {
+                    error(shortcut, "The '" + name + "' method cannot be used with @Incremental properties");
+                    successful = false;
+                }
+            }
+        }
+
+        for (ExecutableElement runInline : findMethodsNamed(typeElement, "runInline")) {
+            ExecutableElement action = Iterables.getOnlyElement(findActionMethod(typeElement));
+
+            if (action.getParameters().size() != 1) {
+                error(runInline, "The 'runInline' method can only be used when 'action' only takes Params");
+                successful = false;
+            }
+
+            if (typeElement.getAnnotation(AutoParallelizable.class).isolation() != Isolation.NONE) {
+                error(runInline, "The 'runInline' method can only be used with Isolation.NONE");
+                successful = false;
+            }
+
+            if (actsOnEachWorkItem(typeElement)) {
+                error(runInline, "The 'runInline' method cannot be combined with options that act on each work item");
+                successful = false;
+            }
+        }
+
+        return successful;
     }
 
-    private void error(Element element, String error) {
-        processingEnv.getMessager().printMessage(Kind.ERROR, error, element);
+    private boolean verifyCostMethod(TypeElement typeElement, TypeElement params) {
+        List<ExecutableElement> possibleCosts = findMethodsNamed(typeElement, "cost");
+
+        if (possibleCosts.isEmpty()) {
+            return true;
+        }
+
+        ExecutableElement cost = possibleCosts.get(0);
+        List<ExecutableElement> shardedProperties = findShardedProperties(params);
+
+        if (shardedProperties.isEmpty()) {
+            error(cost, "The 'cost' method can only be used with an @AutoParallelizable.Shard property");
+            return false;
+        }
+
+        TypeName itemType = shardedItemType(shardedProperties.get(0));
+
+        boolean successful = true;
+
+        if (!cost.getModifiers().contains(Modifier.STATIC)
+                || !cost.getReturnType().getKind().equals(TypeKind.LONG)
+                || cost.getParameters().size() != 1
+                || !TypeName.get(cost.getParameters().get(0).asType()).equals(itemType)) {
+            error(cost, "The 'cost' method must be 'static long cost(" + itemType + ")'");
+            successful = false;
+        }
+
+        if (!isPackagePrivate(cost)) {
+            error(cost, "The 'cost' method must be package-private");
+            successful = false;
+        }
+
+        if (!cost.getThrownTypes().isEmpty()) {
+            error(cost, "The 'cost' method must not throw any exceptions");
+            successful = false;
+        }
+
+        return successful;
+    }
+
+    private boolean verifyWorkItemCache(TypeElement typeElement, TypeElement params) {
+        List<ExecutableElement> workItemCacheProperties = findWorkItemCacheProperties(params);
+
+        if (workItemCacheProperties.size() > 1) {
+            workItemCacheProperties.forEach(workItemCacheProperty -> error(
+                    workItemCacheProperty,
+                    "At most one Params property can be annotated with @AutoParallelizable.WorkItemCache"));
+            return false;
+        }
+
+        boolean successful = true;
+
+        for (ExecutableElement workItemCacheProperty : workItemCacheProperties) {
+            if (!isOfType(workItemCacheProperty.getReturnType(), "org.gradle.api.file.DirectoryProperty")) {
+                error(
+                        workItemCacheProperty,
+                        "@AutoParallelizable.WorkItemCache can only be used on DirectoryProperty properties");
+                successful = false;
+            }
+
+            if (findMethodsNamed(typeElement, "merge").isEmpty()) {
+                error(
+                        workItemCacheProperty,
+                        "@AutoParallelizable.WorkItemCache can only be used with a 'merge' method, as work items are "
+                                + "cached by their @AutoParallelizable.ShardOutput");
+                successful = false;
+            }
+        }
+
+        return successful;
+    }
+
+    private boolean verifyDeduplication(TypeElement typeElement, TypeElement params) {
+        if (!typeElement.getAnnotation(AutoParallelizable.class).deduplicate()) {
+            return true;
+        }
+
+        boolean successful = true;
+
+        if (typeElement.getAnnotation(AutoParallelizable.class).isolation() != Isolation.NONE) {
+            error(typeElement, "deduplicate can only be used with Isolation.NONE");
+            successful = false;
+        }
+
+        if (!findShardedProperties(params).isEmpty() || !findIncrementalProperties(params).isEmpty()) {
+            error(typeElement, "deduplicate cannot be used with @AutoParallelizable.Shard or @Incremental properties");
+            successful = false;
+        }
+
+        List<ExecutableElement> outputProperties = findOutputProperties(params);
+
+        if (outputProperties.isEmpty()) {
+            error(typeElement, "deduplicate requires at least one @OutputFile or @OutputDirectory property to copy");
+            successful = false;
+        }
+
+        for (ExecutableElement outputProperty : outputProperties) {
+            if (!isOfType(outputProperty.getReturnType(), "org.gradle.api.file.RegularFileProperty")
+                    && !isOfType(outputProperty.getReturnType(), "org.gradle.api.file.DirectoryProperty")) {
+                error(outputProperty, "deduplicate can only copy RegularFileProperty or DirectoryProperty outputs");
+                successful = false;
+            }
+        }
+
+        return successful;
+    }
+
+    private boolean verifyBenchmarks(TypeElement typeElement) {
+        if (benchmarksEnabled()
+                && processingEnv.getElementUtils().getTypeElement("org.openjdk.jmh.annotations.Benchmark") == null) {
+            error(typeElement, "The " + BENCHMARKS_OPTION + " option requires JMH on the compile classpath");
+            return false;
+        }
+
+        return true;
+    }
+
+    private boolean benchmarksEnabled() {
+        return Boolean.parseBoolean(processingEnv.getOptions().get(BENCHMARKS_OPTION));
+    }
+
+    private boolean formatEnabled() {
+        return !"false".equals(processingEnv.getOptions().get(FORMAT_OPTION));
+    }
+
+    private boolean verifyCacheability(TypeElement typeElement, TypeElement params) {
+        if (!typeElement.getAnnotation(AutoParallelizable.class).cacheable()) {
+            return true;
+        }
+
+        boolean successful = true;
+
+        for (ExecutableElement property : findNestedProperties(params, new HashSet<>())) {
+            if (isFileTyped(property.getReturnType())
+                    && NORMALIZATION_ANNOTATIONS.stream()
+                            .noneMatch(annotation -> MoreElements.isAnnotationPresent(property, annotation))) {
+                error(
+                        property,
+                        "File properties of cacheable tasks must be outputs or be annotated with @PathSensitive, "
+                                + "@Classpath or @CompileClasspath");
+                successful = false;
+            }
+
+            if (isAbsolutePathSensitive(property)) {
+                error(
+                        property,
+                        "File properties of cacheable tasks must not be @PathSensitive(PathSensitivity.ABSOLUTE), "
+                                + "as other machines would not get cache hits");
+                successful = false;
+            }
+        }
+
+        return successful;
+    }
+
+    private static boolean isAbsolutePathSensitive(ExecutableElement property) {
+        return property.getAnnotationMirrors().stream()
+                .filter(annotation -> MoreTypes.asTypeElement(annotation.getAnnotationType())
+                        .getQualifiedName()
+                        .contentEquals("org.gradle.api.tasks.PathSensitive"))
+                .flatMap(annotation -> annotation.getElementValues().values().stream())
+                .anyMatch(value -> value.getValue() instanceof VariableElement
+                        && ((VariableElement) value.getValue()).getSimpleName().contentEquals("ABSOLUTE"));
+    }
+
+    /** The getters of a {@code Params} like type and, recursively, of its {@code @Nested} types. */
+    private static List<ExecutableElement> findNestedProperties(TypeElement paramsLike, Set<TypeElement> visited) {
+        List<ExecutableElement> properties = new ArrayList<>();
+
+        if (!visited.add(paramsLike)) {
+            return properties;
+        }
+
+        for (Element element : paramsLike.getEnclosedElements()) {
+            if (!element.getKind().equals(ElementKind.METHOD)
+                    || element.getModifiers().contains(Modifier.DEFAULT)
+                    || element.getModifiers().contains(Modifier.STATIC)
+                    || element.getModifiers().contains(Modifier.PRIVATE)) {
+                continue;
+            }
+
+            ExecutableElement property = (ExecutableElement) element;
+            properties.add(property);
+
+            if (isNested(property) && property.getReturnType().getKind().equals(TypeKind.DECLARED)) {
+                properties.addAll(findNestedProperties(MoreTypes.asTypeElement(property.getReturnType()), visited));
+            }
+        }
+
+        return properties;
+    }
+
+    /** Whether the type holds files, directly or as the value of a provider or collection. */
+    private static boolean isFileTyped(TypeMirror type) {
+        if (!type.getKind().equals(TypeKind.DECLARED)) {
+            return false;
+        }
+
+        return FILE_TYPES.contains(MoreTypes.asTypeElement(type).getQualifiedName().toString())
+                || MoreTypes.asDeclared(type).getTypeArguments().stream()
+                        .anyMatch(AutoParallelizableProcessor::isFileTyped);
+    }
+
+    private boolean verifyIsolation(TypeElement typeElement, TypeElement params) {
+        AutoParallelizable annotation = typeElement.getAnnotation(AutoParallelizable.class);
+        List<ExecutableElement> workerClasspathProperties = findWorkerClasspathProperties(params);
+
+        boolean successful = true;
+
+        if (annotation.isolation() != Isolation.PROCESS
+                && (!annotation.maxHeapSize().isEmpty() || annotation.jvmArgs().length > 0)) {
+            error(typeElement, "maxHeapSize and jvmArgs can only be used with Isolation.PROCESS");
+            successful = false;
+        }
+
+        if (annotation.isolation() == Isolation.NONE && !workerClasspathProperties.isEmpty()) {
+            workerClasspathProperties.forEach(workerClasspathProperty -> error(
+                    workerClasspathProperty,
+                    "@AutoParallelizable.WorkerClasspath can only be used with Isolation.CLASSLOADER or "
+                            + "Isolation.PROCESS"));
+            successful = false;
+        }
+
+        if (workerClasspathProperties.size() > 1) {
+            workerClasspathProperties.forEach(workerClasspathProperty -> error(
+                    workerClasspathProperty,
+                    "At most one Params property can be annotated with @AutoParallelizable.WorkerClasspath"));
+            successful = false;
+        }
+
+        for (ExecutableElement workerClasspathProperty : workerClasspathProperties) {
+            if (!isFileCollection(workerClasspathProperty.getReturnType())) {
+                error(
+                        workerClasspathProperty,
+                        "@AutoParallelizable.WorkerClasspath can only be used on ConfigurableFileCollection "
+                                + "properties");
+                successful = false;
+            }
+        }
+
+        return successful;
+    }
+
+    private boolean verifyWorkLimits(TypeElement typeElement) {
+        AutoParallelizable annotation = typeElement.getAnnotation(AutoParallelizable.class);
+
+        boolean successful = true;
+
+        if (annotation.maxConcurrentWorkItems() < 0 || annotation.workItemHeapMb() < 0) {
+            error(typeElement, "maxConcurrentWorkItems and workItemHeapMb must not be negative");
+            successful = false;
+        }
+
+        if (hasWorkLimits(typeElement) && annotation.isolation() != Isolation.NONE) {
+            error(typeElement, "maxConcurrentWorkItems and workItemHeapMb can only be used with Isolation.NONE");
+            successful = false;
+        }
+
+        return successful;
+    }
+
+    private boolean verifyBatching(TypeElement typeElement, TypeElement params) {
+        AutoParallelizable annotation = typeElement.getAnnotation(AutoParallelizable.class);
+        List<ExecutableElement> batchActions = findBatchActionMethod(typeElement);
+
+        if (!isBatched(typeElement)) {
+            batchActions.forEach(batchAction ->
+                    error(batchAction, "The 'action(List<Params>)' method can only be used with maxBatchSize"));
+            return batchActions.isEmpty();
+        }
+
+        boolean successful = true;
+
+        if (annotation.isolation() != Isolation.NONE) {
+            error(typeElement, "maxBatchSize can only be used with Isolation.NONE");
+            successful = false;
+        }
+
+        if (annotation.maxBatchWaitMillis() <= 0) {
+            error(typeElement, "maxBatchWaitMillis must be positive");
+            successful = false;
+        }
+
+        if (!findShardedProperties(params).isEmpty() || !findIncrementalProperties(params).isEmpty()) {
+            error(typeElement, "maxBatchSize cannot be used with @AutoParallelizable.Shard or @Incremental properties");
+            successful = false;
+        }
+
+        if (actsOnEachWorkItem(typeElement)) {
+            error(typeElement, "maxBatchSize cannot be combined with options that act on each work item");
+            successful = false;
+        }
+
+        ExecutableElement action = Iterables.getOnlyElement(findActionMethod(typeElement));
+        if (action.getParameters().stream().anyMatch(parameter -> isInjectable(parameter) || isShared(parameter))) {
+            error(action, "maxBatchSize cannot be used with @AutoParallelizable.Inject or Shared arguments");
+            successful = false;
+        }
+
+        for (ExecutableElement batchAction : batchActions) {
+            TypeMirror batchType = batchAction.getParameters().get(0).asType();
+            List<? extends TypeMirror> batchTypeArguments = MoreTypes.asDeclared(batchType).getTypeArguments();
+
+            if (!batchAction.getModifiers().contains(Modifier.STATIC)
+                    || !batchAction.getReturnType().getKind().equals(TypeKind.VOID)
+                    || batchTypeArguments.size() != 1
+                    || !processingEnv.getTypeUtils().isSameType(batchTypeArguments.get(0), params.asType())) {
+                error(batchAction, "The batch 'action' method must be 'static void action(List<Params>)'");
+                successful = false;
+            }
+
+            if (!isPackagePrivate(batchAction)) {
+                error(batchAction, "The batch 'action' method must be package-private");
+                successful = false;
+            }
+
+            if (!batchAction.getThrownTypes().isEmpty()) {
+                error(batchAction, "The batch 'action' method must not throw any exceptions");
+                successful = false;
+            }
+        }
+
+        return successful;
+    }
+
+    private boolean verifyProfiling(TypeElement typeElement) {
+        boolean successful = true;
+
+        if (isProfiled(typeElement)
+                && typeElement.getAnnotation(AutoParallelizable.class).isolation() != Isolation.NONE) {
+            error(typeElement, "profileSubmissions can only be used with Isolation.NONE");
+            successful = false;
+        }
+
+        if (isTraced(typeElement)
+                && typeElement.getAnnotation(AutoParallelizable.class).isolation() != Isolation.NONE) {
+            error(typeElement, "traceWorkItems can only be used with Isolation.NONE");
+            successful = false;
+        }
+
+        return successful;
+    }
+
+    private boolean verifySharedResources(TypeElement typeElement) {
+        List<ExecutableElement> factories = findSharedResourceMethods(typeElement);
+        ExecutableElement action = Iterables.getOnlyElement(findActionMethod(typeElement));
+
+        boolean successful = true;
+
+        if (!factories.isEmpty() && typeElement.getAnnotation(AutoParallelizable.class).isolation() != Isolation.NONE) {
+            error(typeElement, "@AutoParallelizable.SharedResource methods can only be used with Isolation.NONE");
+            successful = false;
+        }
+
+        for (ExecutableElement factory : factories) {
+            if (!factory.getModifiers().contains(Modifier.STATIC)
+                    || factory.getReturnType().getKind().equals(TypeKind.VOID)
+                    || factory.getParameters().size() != 1) {
+                error(factory, "@AutoParallelizable.SharedResource methods must be 'static R name(K key)'");
+                successful = false;
+            }
+
+            if (!isPackagePrivate(factory)) {
+                error(factory, "@AutoParallelizable.SharedResource methods must be package-private");
+                successful = false;
+            }
+
+            if (!factory.getThrownTypes().isEmpty()) {
+                error(factory, "@AutoParallelizable.SharedResource methods must not throw any exceptions");
+                successful = false;
+            }
+
+            if (factory.getAnnotation(AutoParallelizable.SharedResource.class).maxSize() <= 0) {
+                error(factory, "The maxSize of @AutoParallelizable.SharedResource methods must be positive");
+                successful = false;
+            }
+        }
+
+        if (!successful) {
+            return false;
+        }
+
+        for (VariableElement shared : action.getParameters()) {
+            if (!isShared(shared)) {
+                continue;
+            }
+
+            Optional<ExecutableElement> factory = factories.stream()
+                    .filter(candidate -> candidate.getSimpleName().equals(shared.getSimpleName()))
+                    .findFirst();
+
+            if (factory.isEmpty()) {
+                error(
+                        shared,
+                        "@AutoParallelizable.Shared arguments must be named after an "
+                                + "@AutoParallelizable.SharedResource method");
+                successful = false;
+                continue;
+            }
+
+            TypeName expectedType = sharedResourceType(factory.get());
+
+            if (!TypeName.get(shared.asType()).equals(expectedType)) {
+                error(
+                        shared,
+                        "@AutoParallelizable.Shared argument '" + shared.getSimpleName() + "' must be a "
+                                + expectedType);
+                successful = false;
+            }
+        }
+
+        return successful;
+    }
+
+    /** The {@code Function} from key to object that a shared resource factory is exposed as. */
+    private static ParameterizedTypeName sharedResourceType(ExecutableElement factory) {
+        return ParameterizedTypeName.get(
+                ClassName.get(Function.class),
+                TypeName.get(factory.getParameters().get(0).asType()).box(),
+                TypeName.get(factory.getReturnType()).box());
+    }
+
+    private boolean verifyMappedFiles(TypeElement typeElement) {
+        boolean successful = true;
+
+        if (mapsFiles(typeElement)
+                && typeElement.getAnnotation(AutoParallelizable.class).isolation() != Isolation.NONE) {
+            error(typeElement, "Memory-mapped Function<File, ByteBuffer> arguments require Isolation.NONE");
+            successful = false;
+        }
+
+        for (ExecutableElement merge : findMethodsNamed(typeElement, "merge")) {
+            for (VariableElement parameter : merge.getParameters()) {
+                if (isMappedFiles(parameter)) {
+                    error(parameter, "Only the 'action' method can take memory-mapped files");
+                    successful = false;
+                }
+            }
+        }
+
+        return successful;
+    }
+
+    private List<SharedService> sharedServices(TypeElement typeElement) {
+        List<SharedService> sharedServices = new ArrayList<>();
+
+        if (hasWorkLimits(typeElement)) {
+            sharedServices.add(new SharedService(generatedClassName(typeElement, "WorkLimiter"), "workLimiter"));
+        }
+
+        if (typeElement.getAnnotation(AutoParallelizable.class).deduplicate()) {
+            sharedServices.add(new SharedService(generatedClassName(typeElement, "Deduplicator"), "deduplicator"));
+        }
+
+        if (isProfiled(typeElement)) {
+            sharedServices.add(
+                    new SharedService(generatedClassName(typeElement, "SubmissionProfiler"), "submissionProfiler"));
+        }
+
+        if (isTraced(typeElement)) {
+            sharedServices.add(new SharedService(
+                    generatedClassName(typeElement, "TraceRecorder"),
+                    "traceRecorder",
+                    CodeBlock.of(
+                            "spec -> spec.getParameters().getTraceFile().set(new $T(getProject().getRootDir(), $S))",
+                            File.class,
+                            "build/auto-parallelizable/traces/" + ClassName.get(typeElement).canonicalName()
+                                    + ".json")));
+        }
+
+        if (accountsAllocations(typeElement)) {
+            sharedServices.add(new SharedService(
+                    generatedClassName(typeElement, "AllocationReport"),
+                    "allocationReport",
+                    CodeBlock.of(
+                            "spec -> spec.getParameters().getSamplesDirectory().set(new $T(getProject().getRootDir(), "
+                                    + "$S))",
+                            File.class,
+                            "build/auto-parallelizable/allocations/" + ClassName.get(typeElement).canonicalName()),
+                    false));
+        }
+
+        if (isBatched(typeElement)) {
+            sharedServices.add(new SharedService(
+                    generatedClassName(typeElement, "Batcher"), "batcher", CodeBlock.of("spec -> {}"), false));
+        }
+
+        if (hasSharedResources(typeElement)) {
+            sharedServices.add(
+                    new SharedService(generatedClassName(typeElement, "SharedResources"), "sharedResources"));
+        }
+
+        if (mapsFiles(typeElement)) {
+            sharedServices.add(new SharedService(generatedClassName(typeElement, "MappedFiles"), "mappedFiles"));
+        }
+
+        return sharedServices;
+    }
+
+    private ClassName generatedClassName(TypeElement typeElement, String suffix) {
+        String packageName = processingEnv
+                .getElementUtils()
+                .getPackageOf(typeElement)
+                .getQualifiedName()
+                .toString();
+
+        return ClassName.get(packageName, typeElement.getSimpleName() + suffix);
+    }
+
+    /** Options that wrap each work item, which work items that are batched or run inline would bypass. */
+    private static boolean actsOnEachWorkItem(TypeElement typeElement) {
+        return typeElement.getAnnotation(AutoParallelizable.class).deduplicate()
+                || hasWorkLimits(typeElement)
+                || isProfiled(typeElement)
+                || isTraced(typeElement)
+                || emitsJfrEvents(typeElement)
+                || accountsAllocations(typeElement);
+    }
+
+    private static boolean isBatched(TypeElement typeElement) {
+        return typeElement.getAnnotation(AutoParallelizable.class).maxBatchSize() > 0;
+    }
+
+    private static boolean accountsAllocations(TypeElement typeElement) {
+        return typeElement.getAnnotation(AutoParallelizable.class).accountAllocations();
+    }
+
+    private static boolean emitsJfrEvents(TypeElement typeElement) {
+        return typeElement.getAnnotation(AutoParallelizable.class).emitJfrEvents();
+    }
+
+    private static boolean isTraced(TypeElement typeElement) {
+        return typeElement.getAnnotation(AutoParallelizable.class).traceWorkItems();
+    }
+
+    private static boolean isProfiled(TypeElement typeElement) {
+        return typeElement.getAnnotation(AutoParallelizable.class).profileSubmissions();
+    }
+
+    private static boolean hasWorkLimits(TypeElement typeElement) {
+        AutoParallelizable annotation = typeElement.getAnnotation(AutoParallelizable.class);
+        return annotation.maxConcurrentWorkItems() > 0 || annotation.workItemHeapMb() > 0;
+    }
+
+    private static boolean isListOfFiles(VariableElement parameter) {
+        return parameter.asType().toString().equals("java.util.List<java.io.File>");
+    }
+
+    private static boolean hasShardOutput(ExecutableElement method) {
+        return method.getParameters().stream().anyMatch(AutoParallelizableProcessor::isShardOutput);
+    }
+
+    private static boolean isShardOutput(VariableElement parameter) {
+        return MoreElements.isAnnotationPresent(parameter, AutoParallelizable.ShardOutput.class);
+    }
+
+    private static boolean isInjectable(VariableElement parameter) {
+        return MoreElements.isAnnotationPresent(parameter, AutoParallelizable.Inject.class);
+    }
+
+    private static boolean isShared(VariableElement parameter) {
+        return MoreElements.isAnnotationPresent(parameter, AutoParallelizable.Shared.class);
+    }
+
+    /** An injected {@code Function<File, ByteBuffer>}, which gets memory-mapped files rather than a Gradle service. */
+    private static boolean isMappedFiles(VariableElement parameter) {
+        return isInjectable(parameter)
+                && TypeName.get(parameter.asType())
+                        .equals(ParameterizedTypeName.get(Function.class, File.class, ByteBuffer.class));
+    }
+
+    private static boolean mapsFiles(TypeElement typeElement) {
+        return findActionMethod(typeElement).stream()
+                .flatMap(action -> action.getParameters().stream())
+                .anyMatch(AutoParallelizableProcessor::isMappedFiles);
+    }
+
+    private static boolean hasSharedResources(TypeElement typeElement) {
+        return !findSharedResourceMethods(typeElement).isEmpty();
+    }
+
+    private static boolean isNested(Element element) {
+        return MoreElements.isAnnotationPresent(element, "org.gradle.api.tasks.Nested");
+    }
+
+    private static boolean isAdaptive(ExecutableElement shardedProperty) {
+        return shardedProperty.getAnnotation(AutoParallelizable.Shard.class).adaptive();
+    }
+
+    private static List<ExecutableElement> findShardedProperties(TypeElement params) {
+        return findPropertiesAnnotatedWith(params, AutoParallelizable.Shard.class.getCanonicalName());
+    }
+
+    private static List<ExecutableElement> findIncrementalProperties(TypeElement params) {
+        return findPropertiesAnnotatedWith(params, "org.gradle.work.Incremental");
+    }
+
+    private static List<ExecutableElement> findWorkItemCacheProperties(TypeElement params) {
+        return findPropertiesAnnotatedWith(params, AutoParallelizable.WorkItemCache.class.getCanonicalName());
+    }
+
+    private static List<ExecutableElement> findOutputProperties(TypeElement params) {
+        return params.getEnclosedElements().stream()
+                .filter(element -> element.getKind().equals(ElementKind.METHOD))
+                .filter(element -> MoreElements.isAnnotationPresent(element, "org.gradle.api.tasks.OutputFile")
+                        || MoreElements.isAnnotationPresent(element, "org.gradle.api.tasks.OutputDirectory"))
+                .map(ExecutableElement.class::cast)
+                .collect(Collectors.toList());
+    }
+
+    /** The outputs, local state and internal properties of {@code Params} and its {@code @Nested} types. */
+    private static Set<ExecutableElement> findNonInputProperties(TypeElement params) {
+        return findNestedProperties(params, new HashSet<>()).stream()
+                .filter(property -> NON_INPUT_ANNOTATIONS.stream()
+                        .anyMatch(annotation -> MoreElements.isAnnotationPresent(property, annotation)))
+                .collect(Collectors.toSet());
+    }
+
+    /** The top level file collections and files of {@code Params} that are not outputs. */
+    private static List<ExecutableElement> findInputFileProperties(TypeElement params) {
+        return params.getEnclosedElements().stream()
+                .filter(element -> element.getKind().equals(ElementKind.METHOD))
+                .map(ExecutableElement.class::cast)
+                .filter(method -> !method.getModifiers().contains(Modifier.DEFAULT)
+                        && method.getParameters().isEmpty())
+                .filter(method -> isFileCollection(method.getReturnType())
+                        || isOfType(method.getReturnType(), "org.gradle.api.file.RegularFileProperty"))
+                .filter(method -> !MoreElements.isAnnotationPresent(method, "org.gradle.api.tasks.OutputFile")
+                        && !MoreElements.isAnnotationPresent(method, "org.gradle.api.tasks.OutputFiles"))
+                .collect(Collectors.toList());
+    }
+
+    private static List<ExecutableElement> findWorkerClasspathProperties(TypeElement params) {
+        return findPropertiesAnnotatedWith(params, AutoParallelizable.WorkerClasspath.class.getCanonicalName());
+    }
+
+    private static List<ExecutableElement> findPropertiesAnnotatedWith(TypeElement params, String annotation) {
+        return params.getEnclosedElements().stream()
+                .filter(element -> element.getKind().equals(ElementKind.METHOD))
+                .filter(element -> MoreElements.isAnnotationPresent(element, annotation))
+                .map(ExecutableElement.class::cast)
+                .collect(Collectors.toList());
+    }
+
+    private static List<ExecutableElement> findActionMethod(TypeElement typeElement) {
+        return findMethodsNamed(typeElement, "action").stream()
+                .filter(action -> !isBatchAction(action))
+                .collect(Collectors.toList());
+    }
+
+    private static List<ExecutableElement> findBatchActionMethod(TypeElement typeElement) {
+        return findMethodsNamed(typeElement, "action").stream()
+                .filter(AutoParallelizableProcessor::isBatchAction)
+                .collect(Collectors.toList());
+    }
+
+    /** An {@code action} overload taking only a list, which can never be the one taking {@code Params}. */
+    private static boolean isBatchAction(ExecutableElement action) {
+        return action.getParameters().size() == 1
+                && isOfType(action.getParameters().get(0).asType(), List.class.getCanonicalName());
+    }
+
+    private static List<ExecutableElement> findSharedResourceMethods(TypeElement typeElement) {
+        return typeElement.getEnclosedElements().stream()
+                .filter(subElement -> subElement.getKind().equals(ElementKind.METHOD))
+                .filter(subElement ->
+                        MoreElements.isAnnotationPresent(subElement, AutoParallelizable.SharedResource.class))
+                .map(ExecutableElement.class::cast)
+                .collect(Collectors.toList());
+    }
+
+    private static List<ExecutableElement> findMethodsNamed(TypeElement typeElement, String name) {
+        return typeElement.getEnclosedElements().stream()
+                .filter(subElement -> subElement.getKind().equals(ElementKind.METHOD))
+                .map(ExecutableElement.class::cast)
+                .filter(element -> element.getSimpleName().toString().equals(name))
+                .collect(Collectors.toList());
+    }
+
+    private boolean isSameType(Element first, Element second) {
+        return processingEnv.getTypeUtils().isSameType(first.asType(), second.asType());
+    }
+
+    private boolean isPackagePrivate(Element element) {
+        Set<Modifier> modifiers = element.getModifiers();
+
+        return !(modifiers.contains(Modifier.PUBLIC)
+                || modifiers.contains(Modifier.PRIVATE)
+                || modifiers.contains(Modifier.PROTECTED));
+    }
+
+    private void emitWorkParams(
+            Emitter emitter,
+            TypeElement typeElement,
+            TypeElement params,
+            boolean hasMerge,
+            boolean adaptive,
+            ClassName workParamsClassName) {
+        TypeSpec.Builder workParamsType = TypeSpec.interfaceBuilder(workParamsClassName)
+                .addSuperinterface(ClassName.get("org.gradle.workers", "WorkParameters"))
+                .addSuperinterface(params.asType());
+
+        if (hasMerge) {
+            workParamsType
+                    .addMethod(
+                            abstractGetter(ClassName.get("org.gradle.api.file", "DirectoryProperty"), "getShardOutput"))
+                    .addMethod(abstractGetter(
+                            ClassName.get("org.gradle.api.file", "ConfigurableFileCollection"), "getShardOutputs"));
+        }
+
+        if (adaptive) {
+            workParamsType.addMethod(
+                    abstractGetter(ClassName.get("org.gradle.api.file", "RegularFileProperty"), "getShardDurations"));
+        }
+
+        for (SharedService sharedService : sharedServices(typeElement)) {
+            if (sharedService.passedToWorkItems()) {
+                workParamsType.addMethod(abstractGetter(
+                        ParameterizedTypeName.get(
+                                ClassName.get("org.gradle.api.provider", "Property"), sharedService.className()),
+                        sharedService.getterName()));
+            }
+        }
+
+        if (isProfiled(typeElement)) {
+            workParamsType.addMethod(abstractGetter(
+                    ParameterizedTypeName.get(
+                            ClassName.get("org.gradle.api.provider", "Property"), ClassName.get(Long.class)),
+                    "getSubmission"));
+            workParamsType.addMethod(abstractGetter(
+                    ParameterizedTypeName.get(
+                            ClassName.get("org.gradle.api.provider", "Property"), ClassName.get(Long.class)),
+                    "getSubmittedNanos"));
+        }
+
+        if (isTraced(typeElement) || emitsJfrEvents(typeElement)) {
+            workParamsType.addMethod(abstractGetter(
+                    ParameterizedTypeName.get(
+                            ClassName.get("org.gradle.api.provider", "Property"), ClassName.get(String.class)),
+                    "getSubmittingTaskPath"));
+        }
+
+        if (isTraced(typeElement)) {
+            workParamsType.addMethod(abstractGetter(
+                    ParameterizedTypeName.get(
+                            ClassName.get("org.gradle.api.provider", "Property"), ClassName.get(Integer.class)),
+                    "getTracedShard"));
+        }
+
+        if (accountsAllocations(typeElement)) {
+            workParamsType.addMethod(
+                    abstractGetter(ClassName.get("org.gradle.api.file", "DirectoryProperty"), "getAllocationSamples"));
+        }
+
+        emitter.emit(workParamsType.build());
+    }
+
+    private void emitWorkAction(
+            Emitter emitter, TypeElement typeElement, TypeElement params, ClassName workParamsClassName) {
+        ExecutableElement actionMethod = Iterables.getOnlyElement(findActionMethod(typeElement));
+        Optional<ExecutableElement> adaptiveProperty = findShardedProperties(params).stream()
+                .filter(AutoParallelizableProcessor::isAdaptive)
+                .findFirst();
+        Optional<ExecutableElement> workItemCacheProperty = findWorkItemCacheProperties(params).stream().findFirst();
+
+        CodeBlock.Builder execute = CodeBlock.builder();
+        List<MethodSpec> helperMethods = new ArrayList<>();
+
+        if (hasShardOutput(actionMethod)) {
+            execute.addStatement("$T shardOutput = getParameters().getShardOutput().get().getAsFile()", File.class)
+                    .beginControlFlow("if (!shardOutput.isDirectory() && !shardOutput.mkdirs())")
+                    .addStatement(
+                            "throw new $T($S + shardOutput)",
+                            IllegalStateException.class,
+                            "Could not create shard output directory ")
+                    .endControlFlow();
+        }
+
+        workItemCacheProperty.ifPresent(property -> {
+            execute.addStatement(
+                            "$T cachedShardOutput = getParameters().$N().map(cache -> new $T(cache.getAsFile(), "
+                                    + "workItemKey())).getOrNull()",
+                            File.class,
+                            property.getSimpleName(),
+                            File.class)
+                    .beginControlFlow("if (cachedShardOutput != null && cachedShardOutput.isDirectory())")
+                    .addStatement(
+                            "getWorkItemCacheOperations().copy(spec -> spec.from(cachedShardOutput).into(shardOutput))")
+                    .addStatement("return")
+                    .endControlFlow();
+
+            helperMethods.add(injectMethod(
+                    ClassName.get("org.gradle.api.file", "FileSystemOperations"), "getWorkItemCacheOperations"));
+            Set<ExecutableElement> excludedProperties = new HashSet<>(findNonInputProperties(params));
+            excludedProperties.add(property);
+            helperMethods.addAll(fingerprintMethods(typeElement, params, excludedProperties));
+            helperMethods.add(storeInWorkItemCacheMethod());
+        });
+
+        CodeBlock invocation = invokeStatic(typeElement, actionMethod, parameter -> {
+            if (isShared(parameter)) {
+                return CodeBlock.of("getParameters().getSharedResources().get().$N()", parameter.getSimpleName());
+            }
+
+            if (isMappedFiles(parameter)) {
+                return CodeBlock.of("mappedFiles");
+            }
+
+            return isShardOutput(parameter) ? CodeBlock.of("shardOutput") : CodeBlock.of("getParameters()");
+        });
+
+        CodeBlock runAction;
+
+        if (adaptiveProperty.isPresent()) {
+            runAction = runWorkItem(
+                    typeElement,
+                    List.of(
+                            CodeBlock.of("long startNanos = $T.nanoTime()", System.class),
+                            invocation,
+                            CodeBlock.of("recordShardDuration($T.nanoTime() - startNanos)", System.class)));
+
+            helperMethods.add(recordShardDurationMethod(adaptiveProperty.get()));
+        } else {
+            runAction = runWorkItem(typeElement, List.of(invocation));
+        }
+
+        if (typeElement.getAnnotation(AutoParallelizable.class).deduplicate()) {
+            List<ExecutableElement> outputProperties = findOutputProperties(params);
+
+            execute.addStatement(
+                            "$T<$T> outputs = $T.of($L)",
+                            List.class,
+                            File.class,
+                            List.class,
+                            outputProperties.stream()
+                                    .map(property -> CodeBlock.of(
+                                            "getParameters().$N().get().getAsFile()", property.getSimpleName()))
+                                    .collect(CodeBlock.joining(", ")))
+                    .add(
+                            "$T<$T> firstOutputs = getParameters().getDeduplicator().get().runOnce(workItemKey(), "
+                                    + "outputs, () -> {\n",
+                            List.class,
+                            File.class)
+                    .indent()
+                    .add(runAction)
+                    .unindent()
+                    .add("});\n")
+                    .beginControlFlow("if (!firstOutputs.equals(outputs))");
+
+            for (int output = 0; output < outputProperties.size(); output++) {
+                if (isOfType(outputProperties.get(output).getReturnType(), "org.gradle.api.file.DirectoryProperty")) {
+                    execute.addStatement(
+                            "getDeduplicationOperations().sync(spec -> spec.from(firstOutputs.get($L))"
+                                    + ".into(outputs.get($L)))",
+                            output,
+                            output);
+                } else {
+                    execute.addStatement(
+                            "getDeduplicationOperations().copy(spec -> spec.from(firstOutputs.get($L))"
+                                    + ".into(outputs.get($L).getParentFile())"
+                                    + ".rename(_name -> outputs.get($L).getName()))",
+                            output,
+                            output,
+                            output);
+                }
+            }
+
+            execute.endControlFlow();
+
+            helperMethods.add(injectMethod(
+                    ClassName.get("org.gradle.api.file", "FileSystemOperations"), "getDeduplicationOperations"));
+            helperMethods.addAll(fingerprintMethods(typeElement, params, findNonInputProperties(params)));
+        } else {
+            execute.add(runAction);
+        }
+
+        if (workItemCacheProperty.isPresent()) {
+            execute.beginControlFlow("if (cachedShardOutput != null)")
+                    .addStatement("storeInWorkItemCache(shardOutput, cachedShardOutput)")
+                    .endControlFlow();
+        }
+
+        CodeBlock executeBody = execute.build();
+
+        if (mapsFiles(typeElement)) {
+            executeBody = CodeBlock.builder()
+                    .beginControlFlow(
+                            "try ($T mappedFiles = getParameters().getMappedFiles().get().lease())",
+                            generatedClassName(typeElement, "MappedFiles").nestedClass("Lease"))
+                    .add(executeBody)
+                    .endControlFlow()
+                    .build();
+        }
+
+        if (accountsAllocations(typeElement)) {
+            ClassName samplerClassName = generatedClassName(typeElement, "AllocationSampler");
+            executeBody = CodeBlock.builder()
+                    .addStatement("$T allocationSampler = new $T()", samplerClassName, samplerClassName)
+                    .beginControlFlow("try")
+                    .add(executeBody)
+                    .nextControlFlow("finally")
+                    .addStatement("allocationSampler.writeTo(getParameters().getAllocationSamples().get().getAsFile())")
+                    .endControlFlow()
+                    .build();
+        }
+
+        if (emitsJfrEvents(typeElement)) {
+            ClassName eventClassName = generatedClassName(typeElement, "WorkItemEvent");
+            CodeBlock.Builder commitEvent = CodeBlock.builder()
+                    .addStatement("workItemEvent.container = $T.class", typeElement)
+                    .addStatement("workItemEvent.taskPath = getParameters().getSubmittingTaskPath().get()");
+
+            for (ExecutableElement inputProperty : findInputFileProperties(params)) {
+                if (isFileCollection(inputProperty.getReturnType())) {
+                    commitEvent.addStatement(
+                            "workItemEvent.addInputs(getParameters().$L())", inputProperty.getSimpleName());
+                } else {
+                    commitEvent.addStatement(
+                            "workItemEvent.addInput(getParameters().$L().getAsFile().getOrNull())",
+                            inputProperty.getSimpleName());
+                }
+            }
+
+            executeBody = CodeBlock.builder()
+                    .addStatement("$T workItemEvent = new $T()", eventClassName, eventClassName)
+                    .addStatement("workItemEvent.begin()")
+                    .beginControlFlow("try")
+                    .add(executeBody)
+                    .nextControlFlow("finally")
+                    .addStatement("workItemEvent.end()")
+                    .beginControlFlow("if (workItemEvent.shouldCommit())")
+                    .add(commitEvent.build())
+                    .addStatement("workItemEvent.commit()")
+                    .endControlFlow()
+                    .endControlFlow()
+                    .build();
+        }
+
+        if (isTraced(typeElement)) {
+            executeBody = CodeBlock.builder()
+                    .addStatement("long tracedStartNanos = $T.nanoTime()", System.class)
+                    .beginControlFlow("try")
+                    .add(executeBody)
+                    .nextControlFlow("finally")
+                    .addStatement(
+                            "getParameters().getTraceRecorder().get().record(getParameters(), tracedStartNanos, "
+                                    + "$T.nanoTime())",
+                            System.class)
+                    .endControlFlow()
+                    .build();
+        }
+
+        if (isProfiled(typeElement)) {
+            executeBody = CodeBlock.builder()
+                    .addStatement("long startedNanos = $T.nanoTime()", System.class)
+                    .addStatement(
+                            "$T submissionProfiler = getParameters().getSubmissionProfiler().get()",
+                            generatedClassName(typeElement, "SubmissionProfiler"))
+                    .addStatement(
+                            "submissionProfiler.recordStart(getParameters().getSubmission().get(), startedNanos - "
+                                    + "getParameters().getSubmittedNanos().get())")
+                    .beginControlFlow("try")
+                    .add(executeBody)
+                    .nextControlFlow("finally")
+                    .addStatement("submissionProfiler.recordRun($T.nanoTime() - startedNanos)", System.class)
+                    .endControlFlow()
+                    .build();
+        }
+
+        emitter.emit(workActionType(
+                        typeElement.getSimpleName() + "WorkAction", actionMethod, workParamsClassName, executeBody)
+                .toBuilder()
+                .addMethods(helperMethods)
+                .build());
+    }
+
+    /**
+     * Work items are keyed by a hash of the action's class file and every input {@code Params} property of their
+     * slice. Outputs, local state and internal properties are left out, as running the work item changes them. File
+     * collections, files and directories contribute the names and contents of every file they hold, so that editing an
+     * input changes the key. Everything else contributes the string form of its value.
+     */
+    private List<MethodSpec> fingerprintMethods(
+            TypeElement typeElement, TypeElement params, Set<ExecutableElement> excludedProperties) {
+        String binaryName = processingEnv.getElementUtils().getBinaryName(typeElement).toString();
+        String classFileName = binaryName.substring(binaryName.lastIndexOf('.') + 1) + ".class";
+
+        CodeBlock.Builder digestProperties = CodeBlock.builder();
+        digestParamsLikeElement(digestProperties, "getParameters()", "", params, excludedProperties);
+
+        MethodSpec workItemKey = MethodSpec.methodBuilder("workItemKey")
+                .addModifiers(Modifier.PRIVATE)
+                .returns(String.class)
+                .beginControlFlow("try")
+                .addStatement("$T digest = $T.getInstance($S)", MessageDigest.class, MessageDigest.class, "SHA-256")
+                .beginControlFlow(
+                        "try ($T actionClass = $T.class.getResourceAsStream($S))",
+                        InputStream.class,
+                        typeElement,
+                        classFileName)
+                .beginControlFlow("if (actionClass == null)")
+                .addStatement(
+                        "throw new $T($S)",
+                        IllegalStateException.class,
+                        "Could not find " + classFileName + " to fingerprint work items")
+                .endControlFlow()
+                .addStatement("digest.update(actionClass.readAllBytes())")
+                .endControlFlow()
+                .addCode(digestProperties.build())
+                .addStatement(
+                        "return $T.getUrlEncoder().withoutPadding().encodeToString(digest.digest())", Base64.class)
+                .nextControlFlow("catch ($T e)", IOException.class)
+                .addStatement("throw new $T($S, e)", UncheckedIOException.class, "Could not fingerprint work item")
+                .nextControlFlow("catch ($T e)", NoSuchAlgorithmException.class)
+                .addStatement("throw new $T(e)", IllegalStateException.class)
+                .endControlFlow()
+                .build();
+
+        MethodSpec digestString = MethodSpec.methodBuilder("updateDigest")
+                .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+                .addParameter(MessageDigest.class, "digest")
+                .addParameter(String.class, "value")
+                .addStatement("byte[] bytes = value.getBytes($T.UTF_8)", StandardCharsets.class)
+                .addComment("Length prefixed, so adjacent values cannot run into each other")
+                .addStatement(
+                        "digest.update($T.allocate($T.BYTES).putInt(bytes.length).array())",
+                        ByteBuffer.class,
+                        Integer.class)
+                .addStatement("digest.update(bytes)")
+                .build();
+
+        MethodSpec digestFiles = MethodSpec.methodBuilder("updateDigest")
+                .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+                .addParameter(MessageDigest.class, "digest")
+                .addParameter(ParameterizedTypeName.get(Set.class, File.class), "files")
+                .addException(IOException.class)
+                .beginControlFlow("for ($T file : new $T<>(files))", File.class, TreeSet.class)
+                .addStatement("updateDigest(digest, file.getName())")
+                .addStatement("updateDigest(digest, file)")
+                .endControlFlow()
+                .build();
+
+        MethodSpec digestFile = MethodSpec.methodBuilder("updateDigest")
+                .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+                .addParameter(MessageDigest.class, "digest")
+                .addParameter(File.class, "file")
+                .addException(IOException.class)
+                .beginControlFlow("if (file == null || !file.exists())")
+                .addStatement("updateDigest(digest, $S)", "missing")
+                .nextControlFlow("else if (file.isDirectory())")
+                .addStatement("updateDigest(digest, $S)", "directory")
+                .addStatement("$T<$T> entries", List.class, Path.class)
+                .beginControlFlow("try ($T<$T> walk = $T.walk(file.toPath()))", Stream.class, Path.class, Files.class)
+                .addStatement("entries = walk.sorted().collect($T.toList())", Collectors.class)
+                .endControlFlow()
+                .beginControlFlow("for ($T entry : entries)", Path.class)
+                .addStatement(
+                        "$T relativePath = file.toPath().relativize(entry).toString().replace($T.separatorChar, '/')",
+                        String.class,
+                        File.class)
+                .addComment("Directories end with a slash, so they cannot be mistaken for files")
+                .beginControlFlow("if ($T.isDirectory(entry))", Files.class)
+                .addStatement("updateDigest(digest, relativePath + $S)", "/")
+                .nextControlFlow("else")
+                .addStatement("updateDigest(digest, relativePath)")
+                .addStatement("updateDigestWithContents(digest, entry)")
+                .endControlFlow()
+                .endControlFlow()
+                .nextControlFlow("else")
+                .addStatement("updateDigest(digest, $S)", "file")
+                .addStatement("updateDigestWithContents(digest, file.toPath())")
+                .endControlFlow()
+                .build();
+
+        MethodSpec digestContents = MethodSpec.methodBuilder("updateDigestWithContents")
+                .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+                .addParameter(MessageDigest.class, "digest")
+                .addParameter(Path.class, "file")
+                .addException(IOException.class)
+                .addStatement(
+                        "digest.update($T.allocate($T.BYTES).putLong($T.size(file)).array())",
+                        ByteBuffer.class,
+                        Long.class,
+                        Files.class)
+                .beginControlFlow(
+                        "try ($T input = new $T($T.newInputStream(file), digest))",
+                        InputStream.class,
+                        DigestInputStream.class,
+                        Files.class)
+                .addStatement("input.transferTo($T.nullOutputStream())", OutputStream.class)
+                .endControlFlow()
+                .build();
+
+        return List.of(workItemKey, digestString, digestFiles, digestFile, digestContents);
+    }
+
+    private static MethodSpec storeInWorkItemCacheMethod() {
+        return MethodSpec.methodBuilder("storeInWorkItemCache")
+                .addModifiers(Modifier.PRIVATE)
+                .addParameter(File.class, "shardOutput")
+                .addParameter(File.class, "cachedShardOutput")
+                .addStatement(
+                        "$T pending = new $T(cachedShardOutput.getParentFile(), cachedShardOutput.getName() + $S + "
+                                + "$T.randomUUID())",
+                        File.class,
+                        File.class,
+                        "-",
+                        UUID.class)
+                .beginControlFlow("if (!pending.mkdirs())")
+                .addStatement(
+                        "throw new $T($S + pending)", IllegalStateException.class, "Could not create cache entry ")
+                .endControlFlow()
+                .addStatement("getWorkItemCacheOperations().copy(spec -> spec.from(shardOutput).into(pending))")
+                .addComment("Another build may have stored the same work item first, in which case either copy will do")
+                .beginControlFlow("if (!pending.renameTo(cachedShardOutput))")
+                .addStatement("getWorkItemCacheOperations().delete(spec -> spec.delete(pending))")
+                .endControlFlow()
+                .build();
+    }
+
+    private void digestParamsLikeElement(
+            CodeBlock.Builder builder,
+            String readerContext,
+            String namePrefix,
+            TypeElement paramsLikeElement,
+            Set<ExecutableElement> excludedProperties) {
+        paramsLikeElement.getEnclosedElements().stream()
+                .filter(element -> element.getKind().equals(ElementKind.METHOD))
+                .map(ExecutableElement.class::cast)
+                .forEach(possibleMethod -> {
+                    if (possibleMethod.getModifiers().contains(Modifier.DEFAULT)
+                            || possibleMethod.getModifiers().contains(Modifier.PRIVATE)
+                            || !possibleMethod.getParameters().isEmpty()
+                            || excludedProperties.contains(possibleMethod)
+                            || (!isNested(possibleMethod) && !returnsSettableProperty(possibleMethod))) {
+                        return;
+                    }
+
+                    String name = namePrefix + possibleMethod.getSimpleName();
+
+                    if (isNested(possibleMethod) && !returnsSettableProperty(possibleMethod)) {
+                        digestParamsLikeElement(
+                                builder,
+                                readerContext + "." + possibleMethod.getSimpleName() + "()",
+                                name + ".",
+                                MoreTypes.asTypeElement(possibleMethod.getReturnType()),
+                                excludedProperties);
+                        return;
+                    }
+
+                    builder.addStatement("updateDigest(digest, $S)", name);
+
+                    if (isFileCollection(possibleMethod.getReturnType())) {
+                        builder.addStatement(
+                                "updateDigest(digest, $L.$N().getFiles())",
+                                readerContext,
+                                possibleMethod.getSimpleName());
+                    } else if (isOfType(possibleMethod.getReturnType(), "org.gradle.api.file.RegularFileProperty")
+                            || isOfType(possibleMethod.getReturnType(), "org.gradle.api.file.DirectoryProperty")) {
+                        builder.addStatement(
+                                "updateDigest(digest, $L.$N().getAsFile().getOrNull())",
+                                readerContext,
+                                possibleMethod.getSimpleName());
+                    } else {
+                        builder.addStatement(
+                                "updateDigest(digest, $T.valueOf($L.$N().getOrNull()))",
+                                String.class,
+                                readerContext,
+                                possibleMethod.getSimpleName());
+                    }
+                });
+    }
+
+    /**
+     * Records how long the shard took along with its items. The action runs the whole shard at once, so the duration
+     * can only correct the cost of the shard as a whole, never tell its items apart.
+     */
+    private static MethodSpec recordShardDurationMethod(ExecutableElement shardedProperty) {
+        TypeName itemType = shardedItemType(shardedProperty);
+
+        CodeBlock items = isFileCollection(shardedProperty.getReturnType())
+                ? CodeBlock.of(
+                        "new $T<>(getParameters().$N().getFiles())", ArrayList.class, shardedProperty.getSimpleName())
+                : CodeBlock.of("getParameters().$N().get()", shardedProperty.getSimpleName());
+
+        return MethodSpec.methodBuilder("recordShardDuration")
+                .addModifiers(Modifier.PRIVATE)
+                .addParameter(TypeName.LONG, "durationNanos")
+                .addStatement("$T<$T> items = $L", List.class, itemType, items)
+                .addStatement("$T recorded = new $T()", Properties.class, Properties.class)
+                .addStatement("recorded.setProperty($S, $T.toString(durationNanos))", "durationNanos", Long.class)
+                .beginControlFlow("for (int item = 0; item < items.size(); item++)")
+                .addStatement("recorded.setProperty($S + item, items.get(item).toString())", "item.")
+                .endControlFlow()
+                .addStatement("$T durationFile = getParameters().getShardDurations().get().getAsFile()", File.class)
+                .beginControlFlow(
+                        "try ($T output = $T.newOutputStream(durationFile.toPath()))",
+                        OutputStream.class,
+                        Files.class)
+                .addStatement("recorded.store(output, null)")
+                .nextControlFlow("catch ($T e)", IOException.class)
+                .addStatement(
+                        "throw new $T($S + durationFile, e)",
+                        UncheckedIOException.class,
+                        "Could not record shard duration to ")
+                .endControlFlow()
+                .build();
+    }
+
+    private void emitMergeWorkAction(
+            Emitter emitter,
+            TypeElement typeElement,
+            ExecutableElement mergeMethod,
+            ClassName mergeWorkActionClassName,
+            ClassName workParamsClassName) {
+        CodeBlock invocation = invokeStatic(
+                typeElement,
+                mergeMethod,
+                parameter -> isListOfFiles(parameter)
+                        ? CodeBlock.of("new $T<>(getParameters().getShardOutputs().getFiles())", ArrayList.class)
+                        : CodeBlock.of("getParameters()"));
+
+        emitter.emit(workActionType(
+                mergeWorkActionClassName.simpleName(),
+                mergeMethod,
+                workParamsClassName,
+                runWorkItem(typeElement, List.of(invocation))));
+    }
+
+    private static CodeBlock invokeStatic(
+            TypeElement typeElement,
+            ExecutableElement method,
+            Function<VariableElement, CodeBlock> nonInjectedArgument) {
+        return invokeStatic(typeElement, method, CodeBlock.of(""), nonInjectedArgument);
+    }
+
+    private static CodeBlock invokeStatic(
+            TypeElement typeElement,
+            ExecutableElement method,
+            CodeBlock injectedReceiver,
+            Function<VariableElement, CodeBlock> nonInjectedArgument) {
+        List<CodeBlock> arguments = method.getParameters().stream()
+                .map(parameter -> isInjectable(parameter) && !isMappedFiles(parameter)
+                        ? CodeBlock.of("$L$L()", injectedReceiver, getMethodNameBasedOnType(parameter))
+                        : nonInjectedArgument.apply(parameter))
+                .collect(Collectors.toList());
+
+        return CodeBlock.of("$T.$L($L)", typeElement, method.getSimpleName(), CodeBlock.join(arguments, ", "));
+    }
+
+    private static CodeBlock runWorkItem(TypeElement typeElement, List<CodeBlock> statements) {
+        CodeBlock.Builder builder = CodeBlock.builder();
+
+        if (!hasWorkLimits(typeElement)) {
+            statements.forEach(builder::addStatement);
+            return builder.build();
+        }
+
+        if (statements.size() == 1) {
+            return builder.addStatement("getParameters().getWorkLimiter().get().run(() -> $L)", statements.get(0))
+                    .build();
+        }
+
+        builder.add("getParameters().getWorkLimiter().get().run(() -> {\n").indent();
+        statements.forEach(builder::addStatement);
+        return builder.unindent().add("});\n").build();
+    }
+
+    private static TypeSpec workActionType(
+            String name, ExecutableElement method, ClassName workParamsClassName, CodeBlock executeBody) {
+        List<MethodSpec> injectableMethods = method.getParameters().stream()
+                .filter(AutoParallelizableProcessor::isInjectable)
+                .filter(injectable -> !isMappedFiles(injectable))
+                .map(injectable ->
+                        injectMethod(ClassName.get(injectable.asType()), getMethodNameBasedOnType(injectable)))
+                .collect(Collectors.toList());
+
+        MethodSpec constructor = MethodSpec.constructorBuilder()
+                .addAnnotation(AnnotationSpec.builder(SuppressWarnings.class)
+                        .addMember("value", "$S", "RedundantModifier")
+                        .build())
+                .addModifiers(Modifier.PUBLIC)
+                .build();
+
+        MethodSpec workActionExecute = MethodSpec.methodBuilder("execute")
+                .addAnnotation(Override.class)
+                .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+                .addCode(executeBody)
+                .build();
+
+        return TypeSpec.classBuilder(name)
+                .addModifiers(Modifier.ABSTRACT)
+                .addSuperinterface(ParameterizedTypeName.get(
+                        ClassName.get("org.gradle.workers", "WorkAction"), workParamsClassName))
+                .addMethods(injectableMethods)
+                .addMethod(constructor)
+                .addMethod(workActionExecute)
+                .build();
+    }
+
+    private static String getMethodNameBasedOnType(VariableElement injectable) {
+        return "get" + MoreTypes.asElement(injectable.asType()).getSimpleName();
+    }
+
+    private void emitTaskImpl(
+            Emitter emitter,
+            TypeElement typeElement,
+            TypeElement params,
+            ClassName workActionClassName,
+            Optional<ClassName> mergeWorkActionClassName) {
+        MethodSpec workerExecutor =
+                injectMethod(ClassName.get("org.gradle.workers", "WorkerExecutor"), "getWorkerExecutor");
+
+        TypeSpec.Builder taskImplType = TypeSpec.classBuilder(typeElement.getSimpleName() + "TaskImpl")
+                .addModifiers(Modifier.ABSTRACT)
+                .superclass(ClassName.get("org.gradle.api", "DefaultTask"))
+                .addSuperinterface(ClassName.get(params))
+                .addMethod(workerExecutor);
+
+        List<SharedService> sharedServices = sharedServices(typeElement);
+        Map<TypeElement, String> copyMethodNames = new LinkedHashMap<>();
+        Set<ExecutableElement> unreadProperties = unreadProperties(typeElement, params);
+
+        if (!sharedServices.isEmpty()) {
+            MethodSpec.Builder constructor = MethodSpec.constructorBuilder()
+                    .addAnnotation(AnnotationSpec.builder(SuppressWarnings.class)
+                            .addMember("value", "$S", "RedundantModifier")
+                            .build())
+                    .addModifiers(Modifier.PUBLIC);
+
+            for (SharedService sharedService : sharedServices) {
+                taskImplType.addField(
+                        ParameterizedTypeName.get(
+                                ClassName.get("org.gradle.api.provider", "Provider"), sharedService.className()),
+                        sharedService.name(),
+                        Modifier.PRIVATE,
+                        Modifier.FINAL);
+
+                constructor
+                        .addStatement(
+                                "this.$L = getProject().getGradle().getSharedServices().registerIfAbsent($S, $T.class, "
+                                        + "$L)",
+                                sharedService.name(),
+                                sharedService.className().canonicalName(),
+                                sharedService.className(),
+                                sharedService.configureSpec())
+                        .addStatement("usesService(this.$L)", sharedService.name());
+            }
+
+            taskImplType.addMethod(constructor.build());
+        }
+
+        MethodSpec.Builder execute = MethodSpec.methodBuilder("execute")
+                .addAnnotation(ClassName.get("org.gradle.api.tasks", "TaskAction"))
+                .addModifiers(Modifier.PUBLIC, Modifier.FINAL);
+
+        Optional<ExecutableElement> shardedProperty = findShardedProperties(params).stream().findFirst();
+        Optional<ExecutableElement> incrementalProperty = findIncrementalProperties(params).stream().findFirst();
+
+        CodeBlock.Builder paramsSetters = CodeBlock.builder();
+        Map<ExecutableElement, String> valueOverrides = new HashMap<>();
+        CodeBlock absolutePathChecks = CodeBlock.of("");
+
+        if (typeElement.getAnnotation(AutoParallelizable.class).cacheable()) {
+            taskImplType.addAnnotation(ClassName.get("org.gradle.api.tasks", "CacheableTask"));
+
+            // Only the values can tell whether a string is an absolute path, so this is checked as the task runs
+            CodeBlock.Builder absolutePathChecksBuilder = CodeBlock.builder();
+            addAbsolutePathChecks(absolutePathChecksBuilder, "this", "", params, new HashSet<>());
+            absolutePathChecks = absolutePathChecksBuilder.build();
+            paramsSetters.add(absolutePathChecks);
+        }
+
+        if (!findMethodsNamed(typeElement, "skip").isEmpty()) {
+            paramsSetters
+                    .beginControlFlow("if ($T.skip(this))", typeElement)
+                    .addStatement("setDidWork(false)")
+                    .addStatement("return")
+                    .endControlFlow();
+        }
+
+        if (!findMethodsNamed(typeElement, "runInline").isEmpty()) {
+            paramsSetters
+                    .beginControlFlow("if ($T.runInline(this))", typeElement)
+                    .addStatement("$T.action(this)", typeElement)
+                    .addStatement("return")
+                    .endControlFlow();
+        }
+
+        incrementalProperty.ifPresent(property -> {
+            execute.addParameter(ClassName.get("org.gradle.work", "InputChanges"), "inputChanges");
+            collectIncrementalChanges(paramsSetters, typeElement, property);
+            valueOverrides.put(property, propertyName(property));
+        });
+
+        if (shardedProperty.isPresent()) {
+            // Read at configuration time, as the project is not available to tasks at execution time
+            taskImplType.addField(FieldSpec.builder(TypeName.INT, "maxWorkerCount", Modifier.PRIVATE, Modifier.FINAL)
+                    .initializer("getProject().getGradle().getStartParameter().getMaxWorkerCount()")
+                    .build());
+
+            if (mergeWorkActionClassName.isPresent()) {
+                taskImplType.addMethod(injectMethod(
+                        ClassName.get("org.gradle.api.file", "FileSystemOperations"), "getFileSystemOperations"));
+            }
+
+            submitShardedWork(
+                    paramsSetters,
+                    workerExecutor,
+                    typeElement,
+                    params,
+                    shardedProperty.get(),
+                    incrementalProperty.isPresent(),
+                    workActionClassName,
+                    mergeWorkActionClassName,
+                    unreadProperties,
+                    copyMethodNames);
+        } else if (isBatched(typeElement)) {
+            // The batch runs the action on the Params of the tasks themselves, so nothing is copied
+            paramsSetters
+                    .addStatement("int entry = this.batcher.get().add(this)")
+                    .add(
+                            "$N().noIsolation().submit($T.class, params -> {\n",
+                            workerExecutor,
+                            generatedClassName(typeElement, "BatchWorkAction"))
+                    .indent()
+                    .addStatement("params.getBatcher().set(this.batcher)")
+                    .addStatement("params.getEntry().set(entry)")
+                    .unindent()
+                    .add("});\n");
+        } else {
+            startSubmission(paramsSetters, typeElement);
+
+            if (typeElement.getAnnotation(AutoParallelizable.class).isolation() == Isolation.NONE) {
+                paramsSetters.add(
+                        "$N().noIsolation().submit($T.class, params -> {", workerExecutor, workActionClassName);
+            } else {
+                declareWorkQueue(paramsSetters, typeElement, params, workerExecutor);
+                paramsSetters.add("workQueue.submit($T.class, params -> {", workActionClassName);
+            }
+
+            paramsSetters.indent();
+
+            copyParams(paramsSetters, typeElement, params, valueOverrides, unreadProperties, copyMethodNames);
+            identifySubmission(paramsSetters, typeElement);
+
+            paramsSetters.unindent().add("});\n");
+
+            endSubmission(paramsSetters, typeElement);
+        }
+
+        taskImplType.addMethod(execute.addCode(paramsSetters.build()).build());
+        taskImplType.addMethods(copyMethods(copyMethodNames));
+
+        if (!absolutePathChecks.isEmpty()) {
+            taskImplType.addMethod(warnIfAbsolutePathMethod());
+        }
+
+        shardedProperty
+                .filter(property -> isCostBalanced(typeElement, property))
+                .ifPresent(property -> taskImplType.addMethod(packShardsMethod(shardedItemType(property))));
+
+        shardedProperty.filter(AutoParallelizableProcessor::isAdaptive).ifPresent(property -> taskImplType
+                .addMethod(readCorrectionsMethod(shardedItemType(property)))
+                .addMethod(correctedCostMethod(shardedItemType(property))));
+
+        emitter.emit(taskImplType.build());
+    }
+
+    private static void addAbsolutePathChecks(
+            CodeBlock.Builder builder,
+            String context,
+            String namePrefix,
+            TypeElement paramsLike,
+            Set<TypeElement> visited) {
+        if (!visited.add(paramsLike)) {
+            return;
+        }
+
+        for (Element element : paramsLike.getEnclosedElements()) {
+            if (!element.getKind().equals(ElementKind.METHOD)
+                    || element.getModifiers().contains(Modifier.DEFAULT)
+                    || element.getModifiers().contains(Modifier.STATIC)
+                    || element.getModifiers().contains(Modifier.PRIVATE)) {
+                continue;
+            }
+
+            ExecutableElement property = (ExecutableElement) element;
+            String name = namePrefix + propertyName(property);
+
+            if (isNested(property) && property.getReturnType().getKind().equals(TypeKind.DECLARED)) {
+                addAbsolutePathChecks(
+                        builder,
+                        context + "." + property.getSimpleName() + "()",
+                        name + ".",
+                        MoreTypes.asTypeElement(property.getReturnType()),
+                        visited);
+            } else if (MoreElements.isAnnotationPresent(property, "org.gradle.api.tasks.Input")
+                    && TypeName.get(property.getReturnType())
+                            .equals(ParameterizedTypeName.get(
+                                    ClassName.get("org.gradle.api.provider", "Property"),
+                                    ClassName.get(String.class)))) {
+                builder.addStatement(
+                        "warnIfAbsolutePath($S, $L.$L().getOrNull())", name, context, property.getSimpleName());
+            }
+        }
+    }
+
+    private static MethodSpec warnIfAbsolutePathMethod() {
+        return MethodSpec.methodBuilder("warnIfAbsolutePath")
+                .addModifiers(Modifier.PRIVATE)
+                .addParameter(String.class, "property")
+                .addParameter(String.class, "value")
+                .beginControlFlow("if (value != null && new $T(value).isAbsolute())", File.class)
+                .addStatement(
+                        "getLogger().warn($S, getPath(), property, value)",
+                        "{}: the @Input {} is the absolute path {}, so other machines will not get cache hits")
+                .endControlFlow()
+                .build();
+    }
+
+    private void collectIncrementalChanges(
+            CodeBlock.Builder builder, TypeElement typeElement, ExecutableElement incrementalProperty) {
+        String changedFiles = propertyName(incrementalProperty);
+        String removedFiles = "removed" + capitalize(changedFiles);
+
+        builder.addStatement("$T<$T> $L", List.class, File.class, changedFiles)
+                .beginControlFlow("if (inputChanges.isIncremental())")
+                .addStatement("$L = new $T<>()", changedFiles, ArrayList.class)
+                .addStatement("$T<$T> $L = new $T<>()", Set.class, File.class, removedFiles, LinkedHashSet.class)
+                .beginControlFlow(
+                        "for ($T change : inputChanges.getFileChanges(this.$L()))",
+                        ClassName.get("org.gradle.work", "FileChange"),
+                        incrementalProperty.getSimpleName())
+                .beginControlFlow(
+                        "if (change.getFileType() == $T.DIRECTORY)", ClassName.get("org.gradle.api.file", "FileType"))
+                .addStatement("continue")
+                .endControlFlow()
+                .beginControlFlow(
+                        "if (change.getChangeType() == $T.REMOVED)", ClassName.get("org.gradle.work", "ChangeType"))
+                .addStatement("$L.add(change.getFile())", removedFiles)
+                .nextControlFlow("else")
+                .addStatement("$L.add(change.getFile())", changedFiles)
+                .endControlFlow()
+                .endControlFlow()
+                .beginControlFlow("if (!$L.isEmpty())", removedFiles)
+                .addStatement("$T.removeOutputs(this, $L)", typeElement, removedFiles)
+                .endControlFlow()
+                .beginControlFlow("if ($L.isEmpty())", changedFiles)
+                .addStatement("return")
+                .endControlFlow()
+                .nextControlFlow("else")
+                .addStatement(
+                        "$L = new $T<>(this.$L().getFiles())",
+                        changedFiles,
+                        ArrayList.class,
+                        incrementalProperty.getSimpleName())
+                .endControlFlow();
+    }
+
+    private void submitShardedWork(
+            CodeBlock.Builder builder,
+            MethodSpec workerExecutor,
+            TypeElement typeElement,
+            TypeElement params,
+            ExecutableElement shardedProperty,
+            boolean itemsAlreadyCollected,
+            ClassName workActionClassName,
+            Optional<ClassName> mergeWorkActionClassName,
+            Set<ExecutableElement> unreadProperties,
+            Map<TypeElement, String> copyMethodNames) {
+        String items = propertyName(shardedProperty);
+        String shardItems = "shard" + capitalize(items);
+        TypeName itemsType = ParameterizedTypeName.get(ClassName.get(List.class), shardedItemType(shardedProperty));
+
+        if (!itemsAlreadyCollected) {
+            if (isFileCollection(shardedProperty.getReturnType())) {
+                builder.addStatement(
+                        "$T $L = new $T<>(this.$N().getFiles())",
+                        itemsType,
+                        items,
+                        ArrayList.class,
+                        shardedProperty.getSimpleName());
+            } else {
+                builder.addStatement("$T $L = this.$N().get()", itemsType, items, shardedProperty.getSimpleName());
+            }
+        }
+
+        CodeBlock cost = itemCost(typeElement, shardedProperty);
+
+        if (isAdaptive(shardedProperty)) {
+            CodeBlock allItems = isFileCollection(shardedProperty.getReturnType())
+                    ? CodeBlock.of("this.$N().getFiles()", shardedProperty.getSimpleName())
+                    : CodeBlock.of("this.$N().get()", shardedProperty.getSimpleName());
+
+            builder.addStatement(
+                            "$T durationsDirectory = new $T(getTemporaryDir(), $S)",
+                            File.class,
+                            File.class,
+                            "durations")
+                    .addStatement(
+                            "$T<$T, $T> corrections = readCorrections(durationsDirectory, $L, $L)",
+                            Map.class,
+                            String.class,
+                            Double.class,
+                            allItems,
+                            cost);
+
+            cost = CodeBlock.of("correctedCost(corrections, $L)", cost);
+        }
+
+        if (mergeWorkActionClassName.isPresent()) {
+            builder.addStatement(
+                            "$T shardOutputsDirectory = new $T(getTemporaryDir(), $S)",
+                            File.class,
+                            File.class,
+                            "shard-outputs")
+                    .addStatement("getFileSystemOperations().delete(spec -> spec.delete(shardOutputsDirectory))")
+                    .addStatement("$T<$T> shardOutputs = new $T<>()", List.class, File.class, ArrayList.class);
+        }
+
+        declareWorkQueue(builder, typeElement, params, workerExecutor);
+
+        builder.addStatement(
+                "int shardCount = $T.max(1, $T.min(maxWorkerCount, $L.size()))", Math.class, Math.class, items);
+
+        if (isCostBalanced(typeElement, shardedProperty)) {
+            builder.addStatement("$T<$T> shards = packShards($L, shardCount, $L)", List.class, itemsType, items, cost)
+                    .beginControlFlow("for (int shard = 0; shard < shardCount; shard++)")
+                    .addStatement("$T $L = shards.get(shard)", itemsType, shardItems);
+        } else {
+            // Without a cost to balance by, each shard gets an equal, contiguous run of items in their original order
+            builder.beginControlFlow("for (int shard = 0; shard < shardCount; shard++)")
+                    .addStatement(
+                            "$T $L = $L.subList($L.size() * shard / shardCount, $L.size() * (shard + 1) / shardCount)",
+                            itemsType,
+                            shardItems,
+                            items,
+                            items,
+                            items);
+        }
+
+        if (mergeWorkActionClassName.isPresent()) {
+            builder.addStatement(
+                            "$T shardOutput = new $T(shardOutputsDirectory, $T.toString(shard))",
+                            File.class,
+                            File.class,
+                            Integer.class)
+                    .addStatement("shardOutputs.add(shardOutput)");
+        }
+
+        if (isAdaptive(shardedProperty)) {
+            builder.addStatement(
+                    "$T shardDurations = new $T(durationsDirectory, $S + shard + $S)",
+                    File.class,
+                    File.class,
+                    "shard-",
+                    ".properties");
+        }
+
+        startSubmission(builder, typeElement);
+
+        builder.add("workQueue.submit($T.class, params -> {\n", workActionClassName).indent();
+
+        copyParams(
+                builder,
+                typeElement,
+                params,
+                Map.of(shardedProperty, shardItems),
+                unreadProperties,
+                copyMethodNames);
+        identifySubmission(builder, typeElement);
+
+        if (mergeWorkActionClassName.isPresent()) {
+            builder.addStatement("params.getShardOutput().set(shardOutput)");
+        }
+
+        if (isAdaptive(shardedProperty)) {
+            builder.addStatement("params.getShardDurations().set(shardDurations)");
+        }
+
+        if (isTraced(typeElement)) {
+            builder.addStatement("params.getTracedShard().set(shard)");
+        }
+
+        builder.unindent().add("});\n");
+
+        endSubmission(builder, typeElement);
+
+        builder.endControlFlow();
+
+        mergeWorkActionClassName.ifPresent(mergeWorkAction -> {
+            builder.addStatement("workQueue.await()")
+                    .add("workQueue.submit($T.class, params -> {\n", mergeWorkAction)
+                    .indent();
+
+            copyParams(builder, typeElement, params, Map.of(), unreadProperties, copyMethodNames);
+
+            builder.addStatement("params.getShardOutputs().from(shardOutputs)").unindent().add("});\n");
+        });
+    }
+
+    private static boolean isCostBalanced(TypeElement typeElement, ExecutableElement shardedProperty) {
+        return isFileCollection(shardedProperty.getReturnType())
+                || !findMethodsNamed(typeElement, "cost").isEmpty()
+                || isAdaptive(shardedProperty);
+    }
+
+    private static CodeBlock itemCost(TypeElement typeElement, ExecutableElement shardedProperty) {
+        if (!findMethodsNamed(typeElement, "cost").isEmpty()) {
+            return CodeBlock.of("$T::cost", typeElement);
+        }
+
+        if (isFileCollection(shardedProperty.getReturnType())) {
+            return CodeBlock.of("$T::length", File.class);
+        }
+
+        return CodeBlock.of("_item -> 1");
+    }
+
+    /**
+     * Greedily packs the heaviest remaining item into the lightest shard, then orders the shards heaviest first so the
+     * longest work items start before the short ones.
+     */
+    private static MethodSpec packShardsMethod(TypeName itemType) {
+        TypeName itemsType = ParameterizedTypeName.get(ClassName.get(List.class), itemType);
+        TypeName shardsType = ParameterizedTypeName.get(ClassName.get(List.class), itemsType);
+
+        return MethodSpec.methodBuilder("packShards")
+                .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+                .returns(shardsType)
+                .addParameter(itemsType, "items")
+                .addParameter(TypeName.INT, "shardCount")
+                .addParameter(ParameterizedTypeName.get(ClassName.get(ToLongFunction.class), itemType), "cost")
+                .addStatement("$T<$T, $T> costs = new $T<>()", Map.class, itemType, Long.class, HashMap.class)
+                .beginControlFlow("for ($T item : items)", itemType)
+                .addStatement("costs.computeIfAbsent(item, cost::applyAsLong)")
+                .endControlFlow()
+                .addStatement("$T heaviestFirst = new $T<>(items)", itemsType, ArrayList.class)
+                .addStatement(
+                        "heaviestFirst.sort($T.comparing(costs::get, $T.reverseOrder()))",
+                        Comparator.class,
+                        Comparator.class)
+                .addStatement("$T shards = new $T<>()", shardsType, ArrayList.class)
+                .addStatement("long[] shardCosts = new long[shardCount]")
+                .beginControlFlow("for (int shard = 0; shard < shardCount; shard++)")
+                .addStatement("shards.add(new $T<>())", ArrayList.class)
+                .endControlFlow()
+                .beginControlFlow("for ($T item : heaviestFirst)", itemType)
+                .addStatement("int lightest = 0")
+                .beginControlFlow("for (int shard = 1; shard < shardCount; shard++)")
+                // Ties go to the shard with fewer items, so free items still spread across every shard
+                .beginControlFlow("if (shardCosts[shard] < shardCosts[lightest] || (shardCosts[shard] == "
+                        + "shardCosts[lightest] && shards.get(shard).size() < shards.get(lightest).size()))")
+                .addStatement("lightest = shard")
+                .endControlFlow()
+                .endControlFlow()
+                .addStatement("shards.get(lightest).add(item)")
+                .addStatement("shardCosts[lightest] += costs.get(item)")
+                .endControlFlow()
+                .addStatement(
+                        "shards.sort($T.comparing(shard -> shard.stream().mapToLong(costs::get).sum(), "
+                                + "$T.reverseOrder()))",
+                        Comparator.class,
+                        Comparator.class)
+                .addStatement("return shards")
+                .build();
+    }
+
+    /**
+     * Updates each item's correction to its static cost from the shard durations recorded by the previous run, then
+     * replaces them with a single file holding the corrections of the current items. A shard that took longer than its
+     * share of the total duration, going by its corrected cost, has the correction of each of its items scaled up by
+     * the same ratio, and one that finished early has them scaled down.
+     */
+    private static MethodSpec readCorrectionsMethod(TypeName itemType) {
+        TypeName correctionsType = ParameterizedTypeName.get(Map.class, String.class, Double.class);
+
+        return MethodSpec.methodBuilder("readCorrections")
+                .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+                .returns(correctionsType)
+                .addParameter(File.class, "durationsDirectory")
+                .addParameter(ParameterizedTypeName.get(ClassName.get(Collection.class), itemType), "items")
+                .addParameter(ParameterizedTypeName.get(ClassName.get(ToLongFunction.class), itemType), "cost")
+                .addStatement("$T<$T, $T> costs = new $T<>()", Map.class, String.class, Long.class, HashMap.class)
+                .beginControlFlow("for ($T item : items)", itemType)
+                .addStatement("costs.put(item.toString(), cost.applyAsLong(item))")
+                .endControlFlow()
+                .addStatement("$T corrections = new $T<>()", correctionsType, HashMap.class)
+                .addStatement(
+                        "$T<$T<$T>> shardItems = new $T<>()", List.class, List.class, String.class, ArrayList.class)
+                .addStatement("$T<$T> shardNanos = new $T<>()", List.class, Long.class, ArrayList.class)
+                .addStatement("$T[] durationFiles = durationsDirectory.listFiles()", File.class)
+                .beginControlFlow("try")
+                .beginControlFlow("if (durationFiles != null)")
+                .beginControlFlow("for ($T durationFile : durationFiles)", File.class)
+                .addStatement("$T recorded = new $T()", Properties.class, Properties.class)
+                .beginControlFlow(
+                        "try ($T input = $T.newInputStream(durationFile.toPath()))", InputStream.class, Files.class)
+                .addStatement("recorded.load(input)")
+                .endControlFlow()
+                .beginControlFlow("if (durationFile.getName().equals($S))", "corrections.properties")
+                .beginControlFlow("for ($T item : recorded.stringPropertyNames())", String.class)
+                .addStatement("corrections.put(item, $T.parseDouble(recorded.getProperty(item)))", Double.class)
+                .endControlFlow()
+                .nextControlFlow("else")
+                .addStatement("$T<$T> recordedItems = new $T<>()", List.class, String.class, ArrayList.class)
+                .beginControlFlow("for ($T key : recorded.stringPropertyNames())", String.class)
+                .beginControlFlow("if (key.startsWith($S))", "item.")
+                .addStatement("recordedItems.add(recorded.getProperty(key))")
+                .endControlFlow()
+                .endControlFlow()
+                .addStatement("shardItems.add(recordedItems)")
+                .addStatement("shardNanos.add($T.parseLong(recorded.getProperty($S)))", Long.class, "durationNanos")
+                .endControlFlow()
+                .addStatement("$T.delete(durationFile.toPath())", Files.class)
+                .endControlFlow()
+                .endControlFlow()
+                .addStatement("double[] estimates = new double[shardItems.size()]")
+                .addStatement("double totalEstimate = 0")
+                .addStatement("double totalNanos = 0")
+                .beginControlFlow("for (int shard = 0; shard < shardItems.size(); shard++)")
+                .beginControlFlow("for ($T item : shardItems.get(shard))", String.class)
+                .addStatement(
+                        "estimates[shard] += costs.getOrDefault(item, 0L) * corrections.getOrDefault(item, 1.0)")
+                .endControlFlow()
+                .addStatement("totalEstimate += estimates[shard]")
+                .addStatement("totalNanos += shardNanos.get(shard)")
+                .endControlFlow()
+                .beginControlFlow("for (int shard = 0; shard < shardItems.size(); shard++)")
+                .beginControlFlow("if (estimates[shard] > 0 && totalNanos > 0)")
+                .addStatement(
+                        "double ratio = (shardNanos.get(shard) / totalNanos) / (estimates[shard] / totalEstimate)")
+                .beginControlFlow("for ($T item : shardItems.get(shard))", String.class)
+                .addStatement("corrections.put(item, corrections.getOrDefault(item, 1.0) * ratio)")
+                .endControlFlow()
+                .endControlFlow()
+                .endControlFlow()
+                .addStatement("corrections.keySet().retainAll(costs.keySet())")
+                .addStatement("$T history = new $T()", Properties.class, Properties.class)
+                .addStatement(
+                        "corrections.forEach((item, correction) -> history.setProperty(item, $T.toString(correction)))",
+                        Double.class)
+                .addStatement("$T.createDirectories(durationsDirectory.toPath())", Files.class)
+                .beginControlFlow(
+                        "try ($T output = $T.newOutputStream(new $T(durationsDirectory, $S).toPath()))",
+                        OutputStream.class,
+                        Files.class,
+                        File.class,
+                        "corrections.properties")
+                .addStatement("history.store(output, null)")
+                .endControlFlow()
+                .addStatement("return corrections")
+                .nextControlFlow("catch ($T e)", IOException.class)
+                .addStatement(
+                        "throw new $T($S + durationsDirectory, e)",
+                        UncheckedIOException.class,
+                        "Could not read shard durations from ")
+                .endControlFlow()
+                .build();
+    }
+
+    /**
+     * Scales the static cost of each item by its correction. Items that have not run yet keep their static cost.
+     */
+    private static MethodSpec correctedCostMethod(TypeName itemType) {
+        TypeName costType = ParameterizedTypeName.get(ClassName.get(ToLongFunction.class), itemType);
+
+        return MethodSpec.methodBuilder("correctedCost")
+                .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+                .returns(costType)
+                .addParameter(ParameterizedTypeName.get(Map.class, String.class, Double.class), "corrections")
+                .addParameter(costType, "cost")
+                .addComment("Scaled up so that corrections still tell apart items with small costs, such as one each")
+                .addStatement(
+                        "return item -> $T.round(cost.applyAsLong(item) * corrections.getOrDefault(item.toString(), "
+                                + "1.0) * 1000)",
+                        Math.class)
+                .build();
+    }
+
+    private void emitDeduplicator(Emitter emitter, TypeElement typeElement) {
+        TypeName outputsType = ParameterizedTypeName.get(List.class, File.class);
+        TypeName resultType = ParameterizedTypeName.get(ClassName.get(CompletableFuture.class), outputsType);
+
+        MethodSpec constructor = MethodSpec.constructorBuilder()
+                .addAnnotation(AnnotationSpec.builder(SuppressWarnings.class)
+                        .addMember("value", "$S", "RedundantModifier")
+                        .build())
+                .addModifiers(Modifier.PUBLIC)
+                .build();
+
+        MethodSpec runOnce = MethodSpec.methodBuilder("runOnce")
+                .addModifiers(Modifier.FINAL)
+                .returns(outputsType)
+                .addParameter(String.class, "key")
+                .addParameter(outputsType, "outputs")
+                .addParameter(Runnable.class, "workItem")
+                .addStatement("$T result = new $T<>()", resultType, CompletableFuture.class)
+                .addStatement("$T firstResult = results.putIfAbsent(key, result)", resultType)
+                .beginControlFlow("if (firstResult != null)")
+                .addStatement("return firstResult.join()")
+                .endControlFlow()
+                .beginControlFlow("try")
+                .addStatement("workItem.run()")
+                .nextControlFlow("catch ($T | $T e)", RuntimeException.class, Error.class)
+                .addStatement("result.completeExceptionally(e)")
+                .addStatement("throw e")
+                .endControlFlow()
+                .addStatement("result.complete(outputs)")
+                .addStatement("return outputs")
+                .build();
+
+        emitter.emit(TypeSpec.classBuilder(generatedClassName(typeElement, "Deduplicator"))
+                .addModifiers(Modifier.ABSTRACT)
+                .addSuperinterface(ParameterizedTypeName.get(
+                        ClassName.get("org.gradle.api.services", "BuildService"),
+                        ClassName.get("org.gradle.api.services", "BuildServiceParameters", "None")))
+                .addField(FieldSpec.builder(
+                                ParameterizedTypeName.get(
+                                        ClassName.get(ConcurrentMap.class), ClassName.get(String.class), resultType),
+                                "results",
+                                Modifier.PRIVATE,
+                                Modifier.FINAL)
+                        .initializer("new $T<>()", ConcurrentHashMap.class)
+                        .build())
+                .addMethod(constructor)
+                .addMethod(runOnce)
+                .build());
+    }
+
+    /**
+     * Runs in the worker, which may be another process, so each work item writes its sample to its own file in the
+     * samples directory of the build. Garbage collections are not the work item's own, so it records the counters of
+     * its JVM at its start and end, for the report to count each JVM's collections once.
+     */
+    private void emitAllocationSampler(Emitter emitter, TypeElement typeElement) {
+        MethodSpec writeTo = MethodSpec.methodBuilder("writeTo")
+                .addParameter(File.class, "samplesDirectory")
+                .addStatement(
+                        "$T sample = $T.format($T.ROOT, $S, startAllocatedBytes < 0 ? -1 : allocatedBytes() - "
+                                + "startAllocatedBytes, startGcCount, gcCount(), startGcMillis, gcMillis(), "
+                                + "usedHeapBytes(), jvm())",
+                        String.class,
+                        String.class,
+                        Locale.class,
+                        "%d %d %d %d %d %d %s")
+                .beginControlFlow("try")
+                .addStatement(
+                        "$T.writeString(new $T(samplesDirectory, $T.randomUUID() + $S).toPath(), sample)",
+                        Files.class,
+                        File.class,
+                        UUID.class,
+                        ".sample")
+                .nextControlFlow("catch ($T e)", IOException.class)
+                .addStatement("throw new $T(e)", UncheckedIOException.class)
+                .endControlFlow()
+                .build();
+
+        ClassName threadMxBean = ClassName.get("com.sun.management", "ThreadMXBean");
+        MethodSpec allocatedBytes = MethodSpec.methodBuilder("allocatedBytes")
+                .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+                .returns(TypeName.LONG)
+                .beginControlFlow("if ($T.getThreadMXBean() instanceof $T)", ManagementFactory.class, threadMxBean)
+                .addStatement(
+                        "$T threads = ($T) $T.getThreadMXBean()", threadMxBean, threadMxBean, ManagementFactory.class)
+                .beginControlFlow("if (threads.isThreadAllocatedMemorySupported())")
+                .addComment("Also -1 when allocation counting is disabled")
+                .addStatement("return threads.getCurrentThreadAllocatedBytes()")
+                .endControlFlow()
+                .endControlFlow()
+                .addStatement("return -1")
+                .build();
+
+        MethodSpec gcCount = MethodSpec.methodBuilder("gcCount")
+                .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+                .returns(TypeName.LONG)
+                .addStatement(
+                        "return $T.getGarbageCollectorMXBeans().stream().mapToLong($T::getCollectionCount).sum()",
+                        ManagementFactory.class,
+                        GarbageCollectorMXBean.class)
+                .build();
+
+        MethodSpec gcMillis = MethodSpec.methodBuilder("gcMillis")
+                .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+                .returns(TypeName.LONG)
+                .addStatement(
+                        "return $T.getGarbageCollectorMXBeans().stream().mapToLong($T::getCollectionTime).sum()",
+                        ManagementFactory.class,
+                        GarbageCollectorMXBean.class)
+                .build();
+
+        MethodSpec usedHeapBytes = MethodSpec.methodBuilder("usedHeapBytes")
+                .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+                .returns(TypeName.LONG)
+                .addStatement("return $T.getMemoryMXBean().getHeapMemoryUsage().getUsed()", ManagementFactory.class)
+                .build();
+
+        MethodSpec jvm = MethodSpec.methodBuilder("jvm")
+                .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+                .returns(String.class)
+                .addComment("The start time tells apart processes that were given the same pid")
+                .addStatement("$T runtime = $T.getRuntimeMXBean()", RuntimeMXBean.class, ManagementFactory.class)
+                .addStatement("return runtime.getPid() + $S + runtime.getStartTime()", "-")
+                .build();
+
+        emitter.emit(TypeSpec.classBuilder(generatedClassName(typeElement, "AllocationSampler"))
+                .addModifiers(Modifier.FINAL)
+                .addField(FieldSpec.builder(TypeName.LONG, "startAllocatedBytes", Modifier.PRIVATE, Modifier.FINAL)
+                        .initializer("allocatedBytes()")
+                        .build())
+                .addField(FieldSpec.builder(TypeName.LONG, "startGcCount", Modifier.PRIVATE, Modifier.FINAL)
+                        .initializer("gcCount()")
+                        .build())
+                .addField(FieldSpec.builder(TypeName.LONG, "startGcMillis", Modifier.PRIVATE, Modifier.FINAL)
+                        .initializer("gcMillis()")
+                        .build())
+                .addMethod(writeTo)
+                .addMethod(allocatedBytes)
+                .addMethod(gcCount)
+                .addMethod(gcMillis)
+                .addMethod(usedHeapBytes)
+                .addMethod(jvm)
+                .build());
+    }
+
+    /**
+     * Gives each build its own samples directory, so samples left behind by a build that did not finish are never
+     * counted, and sums up the samples of its work items when the build finishes.
+     */
+    private void emitAllocationReport(Emitter emitter, TypeElement typeElement) {
+        ClassName reportClassName = generatedClassName(typeElement, "AllocationReport");
+        ClassName paramsClassName = reportClassName.nestedClass("Params");
+
+        MethodSpec constructor = MethodSpec.constructorBuilder()
+                .addAnnotation(AnnotationSpec.builder(SuppressWarnings.class)
+                        .addMember("value", "$S", "RedundantModifier")
+                        .build())
+                .addModifiers(Modifier.PUBLIC)
+                .addStatement("$T parent = getParameters().getSamplesDirectory().get().getAsFile()", File.class)
+                .beginControlFlow("try")
+                .addStatement("$T.createDirectories(parent.toPath())", Files.class)
+                .addStatement(
+                        "this.samplesDirectory = $T.createTempDirectory(parent.toPath(), $S).toFile()",
+                        Files.class,
+                        "build")
+                .nextControlFlow("catch ($T e)", IOException.class)
+                .addStatement("throw new $T(e)", UncheckedIOException.class)
+                .endControlFlow()
+                .build();
+
+        MethodSpec samplesDirectory = MethodSpec.methodBuilder("samplesDirectory")
+                .addModifiers(Modifier.FINAL)
+                .returns(File.class)
+                .addStatement("return samplesDirectory")
+                .build();
+
+        MethodSpec close = MethodSpec.methodBuilder("close")
+                .addAnnotation(Override.class)
+                .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+                .addException(IOException.class)
+                .addStatement("$T[] samples = samplesDirectory.listFiles()", File.class)
+                .beginControlFlow("if (samples == null)")
+                .addStatement("return")
+                .endControlFlow()
+                .addStatement("long measuredSamples = 0")
+                .addStatement("long totalAllocatedBytes = 0")
+                .addStatement("long maxAllocatedBytes = 0")
+                .addStatement("long maxUsedHeapBytes = 0")
+                .addStatement("$T<$T, long[]> gcWindows = new $T<>()", Map.class, String.class, HashMap.class)
+                .beginControlFlow("for ($T sample : samples)", File.class)
+                .addStatement("String[] values = $T.readString(sample.toPath()).split($S)", Files.class, " ")
+                .addStatement("long allocatedBytes = $T.parseLong(values[0])", Long.class)
+                .beginControlFlow("if (allocatedBytes >= 0)")
+                .addStatement("measuredSamples++")
+                .addStatement("totalAllocatedBytes += allocatedBytes")
+                .addStatement("maxAllocatedBytes = $T.max(maxAllocatedBytes, allocatedBytes)", Math.class)
+                .endControlFlow()
+                .addComment("Count each JVM's collections once, from its first work item's start to its last's end")
+                .addStatement(
+                        "long[] gcWindow = gcWindows.computeIfAbsent(values[6], _jvm -> new long[] {$T.MAX_VALUE, 0, "
+                                + "$T.MAX_VALUE, 0})",
+                        Long.class,
+                        Long.class)
+                .addStatement("gcWindow[0] = $T.min(gcWindow[0], $T.parseLong(values[1]))", Math.class, Long.class)
+                .addStatement("gcWindow[1] = $T.max(gcWindow[1], $T.parseLong(values[2]))", Math.class, Long.class)
+                .addStatement("gcWindow[2] = $T.min(gcWindow[2], $T.parseLong(values[3]))", Math.class, Long.class)
+                .addStatement("gcWindow[3] = $T.max(gcWindow[3], $T.parseLong(values[4]))", Math.class, Long.class)
+                .addStatement(
+                        "maxUsedHeapBytes = $T.max(maxUsedHeapBytes, $T.parseLong(values[5]))", Math.class, Long.class)
+                .addStatement("$T.delete(sample.toPath())", Files.class)
+                .endControlFlow()
+                .addStatement("$T.delete(samplesDirectory.toPath())", Files.class)
+                .beginControlFlow("if (samples.length == 0)")
+                .addStatement("return")
+                .endControlFlow()
+                .addStatement("long gcCount = 0")
+                .addStatement("long gcMillis = 0")
+                .beginControlFlow("for (long[] gcWindow : gcWindows.values())")
+                .addStatement("gcCount += gcWindow[1] - gcWindow[0]")
+                .addStatement("gcMillis += gcWindow[3] - gcWindow[2]")
+                .endControlFlow()
+                .addComment("Allocations cannot be counted on JVMs without per thread allocation counters")
+                .addStatement(
+                        "String averageAllocated = measuredSamples == 0 ? $S : megabytes(totalAllocatedBytes / "
+                                + "measuredSamples)",
+                        "unknown")
+                .addStatement(
+                        "String maxAllocated = measuredSamples == 0 ? $S : megabytes(maxAllocatedBytes)", "unknown")
+                .addStatement(
+                        "$T.getLogger($T.class).lifecycle($S, $S, samples.length, averageAllocated, maxAllocated, "
+                                + "gcCount, gcMillis, megabytes(maxUsedHeapBytes))",
+                        ClassName.get("org.gradle.api.logging", "Logging"),
+                        reportClassName,
+                        "{}: {} work items allocated {} MB average, {} MB max, {} GCs took {} ms, heap in use {} MB",
+                        ClassName.get(typeElement).canonicalName())
+                .build();
+
+        MethodSpec megabytes = MethodSpec.methodBuilder("megabytes")
+                .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+                .returns(String.class)
+                .addParameter(TypeName.LONG, "bytes")
+                .addStatement(
+                        "return $T.format($T.ROOT, $S, bytes / (1024.0 * 1024.0))", String.class, Locale.class, "%.1f")
+                .build();
+
+        TypeSpec params = TypeSpec.interfaceBuilder(paramsClassName)
+                .addSuperinterface(ClassName.get("org.gradle.api.services", "BuildServiceParameters"))
+                .addMethod(abstractGetter(
+                        ClassName.get("org.gradle.api.file", "DirectoryProperty"), "getSamplesDirectory"))
+                .build();
+
+        emitter.emit(TypeSpec.classBuilder(reportClassName)
+                .addModifiers(Modifier.ABSTRACT)
+                .addSuperinterface(ParameterizedTypeName.get(
+                        ClassName.get("org.gradle.api.services", "BuildService"), paramsClassName))
+                .addSuperinterface(AutoCloseable.class)
+                .addField(File.class, "samplesDirectory", Modifier.PRIVATE, Modifier.FINAL)
+                .addMethod(constructor)
+                .addMethod(samplesDirectory)
+                .addMethod(close)
+                .addMethod(megabytes)
+                .addType(params)
+                .build());
+    }
+
+    private void emitBatchWork(Emitter emitter, TypeElement typeElement) {
+        ClassName batchWorkParamsClassName = generatedClassName(typeElement, "BatchWorkParams");
+
+        emitter.emit(TypeSpec.interfaceBuilder(batchWorkParamsClassName)
+                .addSuperinterface(ClassName.get("org.gradle.workers", "WorkParameters"))
+                .addMethod(abstractGetter(
+                        ParameterizedTypeName.get(
+                                ClassName.get("org.gradle.api.provider", "Property"),
+                                generatedClassName(typeElement, "Batcher")),
+                        "getBatcher"))
+                .addMethod(abstractGetter(
+                        ParameterizedTypeName.get(
+                                ClassName.get("org.gradle.api.provider", "Property"), ClassName.get(Integer.class)),
+                        "getEntry"))
+                .build());
+
+        emitter.emit(workActionType(
+                typeElement.getSimpleName() + "BatchWorkAction",
+                Iterables.getOnlyElement(findActionMethod(typeElement)),
+                batchWorkParamsClassName,
+                CodeBlock.builder()
+                        .addStatement("getParameters().getBatcher().get().run(getParameters().getEntry().get())")
+                        .build()));
+    }
+
+    /**
+     * Each task adds its params to a queue and submits a work item. A work item takes its own params, unless another
+     * work item already has, and as many queued params as fit in a batch, then runs the action for them. Before taking
+     * params, it waits until the queue holds a full batch or its oldest params have waited long enough. It keeps
+     * running batches until its own params have run, and only waits for another work item while that one is running
+     * its params, so no work item sits on params that others could run.
+     */
+    private void emitBatcher(Emitter emitter, TypeElement typeElement, TypeElement params) {
+        AutoParallelizable annotation = typeElement.getAnnotation(AutoParallelizable.class);
+        ClassName batcherClassName = generatedClassName(typeElement, "Batcher");
+        ClassName entryClassName = batcherClassName.nestedClass("Entry");
+        TypeName entries = ParameterizedTypeName.get(ClassName.get(List.class), entryClassName);
+        ClassName gradleException = ClassName.get("org.gradle.api", "GradleException");
+
+        MethodSpec constructor = MethodSpec.constructorBuilder()
+                .addAnnotation(AnnotationSpec.builder(SuppressWarnings.class)
+                        .addMember("value", "$S", "RedundantModifier")
+                        .build())
+                .addModifiers(Modifier.PUBLIC)
+                .build();
+
+        MethodSpec add = MethodSpec.methodBuilder("add")
+                .addModifiers(Modifier.FINAL, Modifier.SYNCHRONIZED)
+                .returns(TypeName.INT)
+                .addParameter(ClassName.get(params), "params")
+                .addStatement("int entryId = nextEntryId++")
+                .addStatement("$T entry = new $T(params)", entryClassName, entryClassName)
+                .addStatement("entries.put(entryId, entry)")
+                .addStatement("queued.add(entry)")
+                .addStatement("notifyAll()")
+                .addStatement("return entryId")
+                .build();
+
+        CodeBlock.Builder runAction = CodeBlock.builder();
+        if (findBatchActionMethod(typeElement).isEmpty()) {
+            runAction
+                    .beginControlFlow("for ($T entry : batch)", entryClassName)
+                    .addStatement("$T.action(entry.params)", typeElement)
+                    .endControlFlow();
+        } else {
+            TypeName paramsList = ParameterizedTypeName.get(ClassName.get(List.class), ClassName.get(params));
+            runAction
+                    .addStatement("$T params = new $T<>(batch.size())", paramsList, ArrayList.class)
+                    .beginControlFlow("for ($T entry : batch)", entryClassName)
+                    .addStatement("params.add(entry.params)")
+                    .endControlFlow()
+                    .addStatement("$T.action($T.unmodifiableList(params))", typeElement, Collections.class);
+        }
+
+        MethodSpec run = MethodSpec.methodBuilder("run")
+                .addModifiers(Modifier.FINAL)
+                .addParameter(TypeName.INT, "entryId")
+                .addStatement("$T batch = claim(entryId)", entries)
+                .beginControlFlow("while (!batch.isEmpty())")
+                .addStatement("$T failure = null", Throwable.class)
+                .beginControlFlow("try")
+                .add(runAction.build())
+                .nextControlFlow("catch ($T | $T e)", RuntimeException.class, Error.class)
+                .addStatement("failure = e")
+                .endControlFlow()
+                .addStatement("finish(batch, failure)")
+                .addStatement("batch = claim(entryId)")
+                .endControlFlow()
+                .addStatement("awaitFinished(entryId)")
+                .build();
+
+        MethodSpec claim = MethodSpec.methodBuilder("claim")
+                .addModifiers(Modifier.PRIVATE, Modifier.SYNCHRONIZED)
+                .returns(entries)
+                .addParameter(TypeName.INT, "entryId")
+                .addStatement("$T entry = entries.get(entryId)", entryClassName)
+                .beginControlFlow("while (!entry.finished && !queued.isEmpty() && queued.size() < MAX_BATCH_SIZE)")
+                .addStatement(
+                        "long remainingNanos = queued.peek().createdNanos + MAX_BATCH_WAIT_NANOS - $T.nanoTime()",
+                        System.class)
+                .beginControlFlow("if (remainingNanos <= 0)")
+                .addStatement("break")
+                .endControlFlow()
+                .addStatement("waitNanos(remainingNanos)")
+                .endControlFlow()
+                .addStatement("$T batch = new $T<>()", entries, ArrayList.class)
+                .beginControlFlow("if (entry.finished)")
+                .addStatement("return batch")
+                .endControlFlow()
+                .beginControlFlow("if (!entry.claimed)")
+                .addStatement("queued.remove(entry)")
+                .addStatement("batch.add(entry)")
+                .endControlFlow()
+                .beginControlFlow("while (batch.size() < MAX_BATCH_SIZE && !queued.isEmpty())")
+                .addStatement("batch.add(queued.poll())")
+                .endControlFlow()
+                .beginControlFlow("for ($T claimed : batch)", entryClassName)
+                .addStatement("claimed.claimed = true")
+                .endControlFlow()
+                .addStatement("return batch")
+                .build();
+
+        MethodSpec finish = MethodSpec.methodBuilder("finish")
+                .addModifiers(Modifier.PRIVATE, Modifier.SYNCHRONIZED)
+                .addParameter(entries, "batch")
+                .addParameter(Throwable.class, "failure")
+                .beginControlFlow("for ($T entry : batch)", entryClassName)
+                .addStatement("entry.finished = true")
+                .addStatement("entry.batchSize = batch.size()")
+                .addStatement("entry.failure = failure")
+                .addComment("The params are the task itself, which the build service must not keep alive")
+                .addStatement("entry.params = null")
+                .endControlFlow()
+                .addStatement("notifyAll()")
+                .build();
+
+        MethodSpec awaitFinished = MethodSpec.methodBuilder("awaitFinished")
+                .addModifiers(Modifier.PRIVATE, Modifier.SYNCHRONIZED)
+                .addParameter(TypeName.INT, "entryId")
+                .addStatement("$T entry = entries.remove(entryId)", entryClassName)
+                .beginControlFlow("while (!entry.finished)")
+                .addStatement("waitNanos($T.MAX_VALUE)", Long.class)
+                .endControlFlow()
+                .beginControlFlow("if (entry.failure != null)")
+                .addStatement(
+                        "throw new $T($S + entry.batchSize + $S, entry.failure)",
+                        gradleException,
+                        "The batch of ",
+                        " tasks this task ran in failed")
+                .endControlFlow()
+                .build();
+
+        MethodSpec waitNanos = MethodSpec.methodBuilder("waitNanos")
+                .addModifiers(Modifier.PRIVATE)
+                .addParameter(TypeName.LONG, "nanos")
+                .beginControlFlow("try")
+                .addStatement("$T.NANOSECONDS.timedWait(this, nanos)", TimeUnit.class)
+                .nextControlFlow("catch ($T e)", InterruptedException.class)
+                .addStatement("$T.currentThread().interrupt()", Thread.class)
+                .addStatement("throw new $T($S, e)", gradleException, "Interrupted while waiting for a batch of tasks")
+                .endControlFlow()
+                .build();
+
+        TypeSpec entry = TypeSpec.classBuilder(entryClassName)
+                .addModifiers(Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                .addField(FieldSpec.builder(TypeName.LONG, "createdNanos", Modifier.PRIVATE, Modifier.FINAL)
+                        .initializer("$T.nanoTime()", System.class)
+                        .build())
+                .addField(ClassName.get(params), "params", Modifier.PRIVATE)
+                .addField(TypeName.BOOLEAN, "claimed", Modifier.PRIVATE)
+                .addField(TypeName.BOOLEAN, "finished", Modifier.PRIVATE)
+                .addField(TypeName.INT, "batchSize", Modifier.PRIVATE)
+                .addField(Throwable.class, "failure", Modifier.PRIVATE)
+                .addMethod(MethodSpec.constructorBuilder()
+                        .addModifiers(Modifier.PRIVATE)
+                        .addParameter(ClassName.get(params), "params")
+                        .addStatement("this.params = params")
+                        .build())
+                .build();
+
+        emitter.emit(TypeSpec.classBuilder(batcherClassName)
+                .addModifiers(Modifier.ABSTRACT)
+                .addSuperinterface(ParameterizedTypeName.get(
+                        ClassName.get("org.gradle.api.services", "BuildService"),
+                        ClassName.get("org.gradle.api.services", "BuildServiceParameters")
+                                .nestedClass("None")))
+                .addField(FieldSpec.builder(
+                                TypeName.INT, "MAX_BATCH_SIZE", Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                        .initializer("$L", annotation.maxBatchSize())
+                        .build())
+                .addField(FieldSpec.builder(
+                                TypeName.LONG,
+                                "MAX_BATCH_WAIT_NANOS",
+                                Modifier.PRIVATE,
+                                Modifier.STATIC,
+                                Modifier.FINAL)
+                        .initializer("$T.MILLISECONDS.toNanos($L)", TimeUnit.class, annotation.maxBatchWaitMillis())
+                        .build())
+                .addField(FieldSpec.builder(
+                                ParameterizedTypeName.get(
+                                        ClassName.get(Map.class), ClassName.get(Integer.class), entryClassName),
+                                "entries",
+                                Modifier.PRIVATE,
+                                Modifier.FINAL)
+                        .initializer("new $T<>()", HashMap.class)
+                        .build())
+                .addField(FieldSpec.builder(
+                                ParameterizedTypeName.get(ClassName.get(Deque.class), entryClassName),
+                                "queued",
+                                Modifier.PRIVATE,
+                                Modifier.FINAL)
+                        .initializer("new $T<>()", ArrayDeque.class)
+                        .build())
+                .addField(TypeName.INT, "nextEntryId", Modifier.PRIVATE)
+                .addMethod(constructor)
+                .addMethod(add)
+                .addMethod(run)
+                .addMethod(claim)
+                .addMethod(finish)
+                .addMethod(awaitFinished)
+                .addMethod(waitNanos)
+                .addType(entry)
+                .build());
+    }
+
+    /**
+     * Each factory gets a bounded, least recently used cache. Values are built outside the lock, so work items that
+     * need other keys are not held up, while those that need the same key wait for the one value to be built.
+     */
+    private void emitSharedResources(Emitter emitter, TypeElement typeElement) {
+        ClassName sharedResourcesClassName = generatedClassName(typeElement, "SharedResources");
+        ClassName cacheClassName = sharedResourcesClassName.nestedClass("Cache");
+        TypeVariableName key = TypeVariableName.get("K");
+        TypeVariableName value = TypeVariableName.get("V");
+        TypeName futureValue = ParameterizedTypeName.get(ClassName.get(CompletableFuture.class), value);
+        TypeName values = ParameterizedTypeName.get(ClassName.get(Map.class), key, futureValue);
+
+        TypeSpec.Builder sharedResourcesType = TypeSpec.classBuilder(sharedResourcesClassName)
+                .addModifiers(Modifier.ABSTRACT)
+                .addSuperinterface(ParameterizedTypeName.get(
+                        ClassName.get("org.gradle.api.services", "BuildService"),
+                        ClassName.get("org.gradle.api.services", "BuildServiceParameters")
+                                .nestedClass("None")));
+
+        List<MethodSpec> accessors = new ArrayList<>();
+
+        for (ExecutableElement factory : findSharedResourceMethods(typeElement)) {
+            ParameterizedTypeName type = sharedResourceType(factory);
+
+            sharedResourcesType.addField(FieldSpec.builder(
+                            ParameterizedTypeName.get(cacheClassName, type.typeArguments.toArray(new TypeName[0])),
+                            factory.getSimpleName().toString(),
+                            Modifier.PRIVATE,
+                            Modifier.FINAL)
+                    .initializer(
+                            "new $T<>($L, $T::$N)",
+                            cacheClassName,
+                            factory.getAnnotation(AutoParallelizable.SharedResource.class).maxSize(),
+                            typeElement,
+                            factory.getSimpleName())
+                    .build());
+
+            accessors.add(MethodSpec.methodBuilder(factory.getSimpleName().toString())
+                    .addModifiers(Modifier.FINAL)
+                    .returns(type)
+                    .addStatement("return $N", factory.getSimpleName())
+                    .build());
+        }
+
+        MethodSpec constructor = MethodSpec.constructorBuilder()
+                .addAnnotation(AnnotationSpec.builder(SuppressWarnings.class)
+                        .addMember("value", "$S", "RedundantModifier")
+                        .build())
+                .addModifiers(Modifier.PUBLIC)
+                .build();
+
+        TypeSpec leastRecentlyUsed = TypeSpec.anonymousClassBuilder("16, 0.75f, true")
+                .addSuperinterface(ParameterizedTypeName.get(ClassName.get(LinkedHashMap.class), key, futureValue))
+                .addMethod(MethodSpec.methodBuilder("removeEldestEntry")
+                        .addAnnotation(Override.class)
+                        .addModifiers(Modifier.PROTECTED)
+                        .returns(TypeName.BOOLEAN)
+                        .addParameter(
+                                ParameterizedTypeName.get(ClassName.get(Map.Entry.class), key, futureValue), "eldest")
+                        .addStatement("return size() > maxSize")
+                        .build())
+                .build();
+
+        MethodSpec cacheConstructor = MethodSpec.constructorBuilder()
+                .addParameter(TypeName.INT, "maxSize")
+                .addParameter(ParameterizedTypeName.get(ClassName.get(Function.class), key, value), "factory")
+                .addComment("Access ordered, so the least recently used value is evicted first")
+                .addStatement("this.values = $L", leastRecentlyUsed)
+                .addStatement("this.factory = factory")
+                .build();
+
+        MethodSpec apply = MethodSpec.methodBuilder("apply")
+                .addAnnotation(Override.class)
+                .addModifiers(Modifier.PUBLIC)
+                .returns(value)
+                .addParameter(key, "key")
+                .addStatement("$T value = new $T<>()", futureValue, CompletableFuture.class)
+                .addStatement("$T existingValue", futureValue)
+                .beginControlFlow("synchronized (values)")
+                .addStatement("existingValue = values.putIfAbsent(key, value)")
+                .endControlFlow()
+                .beginControlFlow("if (existingValue != null)")
+                .addStatement("return existingValue.join()")
+                .endControlFlow()
+                .beginControlFlow("try")
+                .addStatement("value.complete(factory.apply(key))")
+                .nextControlFlow("catch ($T | $T e)", RuntimeException.class, Error.class)
+                .beginControlFlow("synchronized (values)")
+                .addStatement("values.remove(key, value)")
+                .endControlFlow()
+                .addStatement("value.completeExceptionally(e)")
+                .addStatement("throw e")
+                .endControlFlow()
+                .addStatement("return value.join()")
+                .build();
+
+        TypeSpec cache = TypeSpec.classBuilder(cacheClassName)
+                .addModifiers(Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                .addTypeVariable(key)
+                .addTypeVariable(value)
+                .addSuperinterface(ParameterizedTypeName.get(ClassName.get(Function.class), key, value))
+                .addField(values, "values", Modifier.PRIVATE, Modifier.FINAL)
+                .addField(
+                        ParameterizedTypeName.get(ClassName.get(Function.class), key, value),
+                        "factory",
+                        Modifier.PRIVATE,
+                        Modifier.FINAL)
+                .addMethod(cacheConstructor)
+                .addMethod(apply)
+                .build();
+
+        emitter.emit(sharedResourcesType
+                .addMethod(constructor)
+                .addMethods(accessors)
+                .addType(cache)
+                .build());
+    }
+
+    /**
+     * Mappings are shared by every work item of the build and counted by the leases of the work items using them, as
+     * unmapping a buffer that is still read would crash the daemon. A mapping is only reused while the file has the
+     * size and modification time it was mapped with, since another task of the build may rewrite it in between.
+     */
+    private void emitMappedFiles(Emitter emitter, TypeElement typeElement) {
+        ClassName mappedFilesClassName = generatedClassName(typeElement, "MappedFiles");
+        ClassName mappingClassName = mappedFilesClassName.nestedClass("Mapping");
+        ClassName leaseClassName = mappedFilesClassName.nestedClass("Lease");
+
+        MethodSpec constructor = MethodSpec.constructorBuilder()
+                .addAnnotation(AnnotationSpec.builder(SuppressWarnings.class)
+                        .addMember("value", "$S", "RedundantModifier")
+                        .build())
+                .addModifiers(Modifier.PUBLIC)
+                .build();
+
+        MethodSpec lease = MethodSpec.methodBuilder("lease")
+                .addModifiers(Modifier.FINAL)
+                .returns(leaseClassName)
+                .addStatement("return new $T()", leaseClassName)
+                .build();
+
+        MethodSpec acquire = MethodSpec.methodBuilder("acquire")
+                .addModifiers(Modifier.PRIVATE, Modifier.SYNCHRONIZED)
+                .returns(mappingClassName)
+                .addParameter(File.class, "file")
+                .addStatement("$T mapping = mappings.get(file)", mappingClassName)
+                .beginControlFlow(
+                        "if (mapping != null && (mapping.lastModified != file.lastModified() "
+                                + "|| mapping.size != file.length()))")
+                .addComment("The file changed since it was mapped, so later readers must not see its old contents")
+                .addStatement("mappings.remove(file)")
+                .addStatement("mapping.stale = true")
+                .beginControlFlow("if (mapping.references == 0)")
+                .addStatement("unmap(mapping.buffer)")
+                .endControlFlow()
+                .addStatement("mapping = null")
+                .endControlFlow()
+                .beginControlFlow("if (mapping == null)")
+                .addStatement("mapping = map(file)")
+                .addStatement("mappings.put(file, mapping)")
+                .endControlFlow()
+                .addStatement("mapping.references++")
+                .addStatement("return mapping")
+                .build();
+
+        MethodSpec release = MethodSpec.methodBuilder("release")
+                .addModifiers(Modifier.PRIVATE, Modifier.SYNCHRONIZED)
+                .addParameter(mappingClassName, "mapping")
+                .addStatement("mapping.references--")
+                .beginControlFlow("if (mapping.stale && mapping.references == 0)")
+                .addStatement("unmap(mapping.buffer)")
+                .endControlFlow()
+                .build();
+
+        MethodSpec close = MethodSpec.methodBuilder("close")
+                .addAnnotation(Override.class)
+                .addModifiers(Modifier.PUBLIC, Modifier.FINAL, Modifier.SYNCHRONIZED)
+                .beginControlFlow("for ($T mapping : mappings.values())", mappingClassName)
+                .addComment("A buffer still in use would crash the daemon if unmapped, so it is left to the GC")
+                .beginControlFlow("if (mapping.references == 0)")
+                .addStatement("unmap(mapping.buffer)")
+                .endControlFlow()
+                .endControlFlow()
+                .addStatement("mappings.clear()")
+                .build();
+
+        MethodSpec map = MethodSpec.methodBuilder("map")
+                .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+                .returns(mappingClassName)
+                .addParameter(File.class, "file")
+                .addComment("Read before mapping, so a file rewritten meanwhile is mapped again rather than reused")
+                .addStatement("long lastModified = file.lastModified()")
+                .beginControlFlow(
+                        "try ($T channel = $T.open(file.toPath(), $T.READ))",
+                        FileChannel.class,
+                        FileChannel.class,
+                        StandardOpenOption.class)
+                .addStatement("long size = channel.size()")
+                .beginControlFlow("if (size > $T.MAX_VALUE)", Integer.class)
+                .addStatement(
+                        "throw new $T($S + file)",
+                        IllegalArgumentException.class,
+                        "Cannot map files larger than 2 GB: ")
+                .endControlFlow()
+                .addStatement(
+                        "return new $T(channel.map($T.MapMode.READ_ONLY, 0, size), lastModified, size)",
+                        mappingClassName,
+                        FileChannel.class)
+                .nextControlFlow("catch ($T e)", IOException.class)
+                .addStatement("throw new $T($S + file, e)", UncheckedIOException.class, "Could not map ")
+                .endControlFlow()
+                .build();
+
+        MethodSpec unmap = MethodSpec.methodBuilder("unmap")
+                .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+                .addParameter(MappedByteBuffer.class, "buffer")
+                .beginControlFlow("try")
+                .addStatement(
+                        "$T theUnsafe = $T.forName($S).getDeclaredField($S)",
+                        Field.class,
+                        Class.class,
+                        "sun.misc.Unsafe",
+                        "theUnsafe")
+                .addStatement("theUnsafe.setAccessible(true)")
+                .addStatement("$T unsafe = theUnsafe.get(null)", Object.class)
+                .addStatement(
+                        "unsafe.getClass().getMethod($S, $T.class).invoke(unsafe, buffer)",
+                        "invokeCleaner",
+                        ByteBuffer.class)
+                .nextControlFlow(
+                        "catch ($T | $T _unmapFailure)", ReflectiveOperationException.class, RuntimeException.class)
+                .addComment("The mapping is then released when the buffer is garbage collected")
+                .endControlFlow()
+                .build();
+
+        TypeSpec mapping = TypeSpec.classBuilder(mappingClassName)
+                .addModifiers(Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                .addField(MappedByteBuffer.class, "buffer", Modifier.PRIVATE, Modifier.FINAL)
+                .addField(TypeName.LONG, "lastModified", Modifier.PRIVATE, Modifier.FINAL)
+                .addField(TypeName.LONG, "size", Modifier.PRIVATE, Modifier.FINAL)
+                .addField(TypeName.INT, "references", Modifier.PRIVATE)
+                .addField(TypeName.BOOLEAN, "stale", Modifier.PRIVATE)
+                .addMethod(MethodSpec.constructorBuilder()
+                        .addParameter(MappedByteBuffer.class, "buffer")
+                        .addParameter(TypeName.LONG, "lastModified")
+                        .addParameter(TypeName.LONG, "size")
+                        .addStatement("this.buffer = buffer")
+                        .addStatement("this.lastModified = lastModified")
+                        .addStatement("this.size = size")
+                        .build())
+                .build();
+
+        TypeSpec leaseType = TypeSpec.classBuilder(leaseClassName)
+                .addModifiers(Modifier.FINAL)
+                .addSuperinterface(ParameterizedTypeName.get(Function.class, File.class, ByteBuffer.class))
+                .addSuperinterface(AutoCloseable.class)
+                .addField(FieldSpec.builder(
+                                ParameterizedTypeName.get(ClassName.get(List.class), mappingClassName),
+                                "leased",
+                                Modifier.PRIVATE,
+                                Modifier.FINAL)
+                        .initializer("new $T<>()", ArrayList.class)
+                        .build())
+                .addMethod(MethodSpec.methodBuilder("apply")
+                        .addAnnotation(Override.class)
+                        .addModifiers(Modifier.PUBLIC, Modifier.SYNCHRONIZED)
+                        .returns(ByteBuffer.class)
+                        .addParameter(File.class, "file")
+                        .addStatement("$T mapping = acquire(file.getAbsoluteFile())", mappingClassName)
+                        .addStatement("leased.add(mapping)")
+                        .addStatement("return mapping.buffer.duplicate()")
+                        .build())
+                .addMethod(MethodSpec.methodBuilder("close")
+                        .addAnnotation(Override.class)
+                        .addModifiers(Modifier.PUBLIC, Modifier.SYNCHRONIZED)
+                        .addStatement("leased.forEach($T.this::release)", mappedFilesClassName)
+                        .addStatement("leased.clear()")
+                        .build())
+                .build();
+
+        emitter.emit(TypeSpec.classBuilder(mappedFilesClassName)
+                .addModifiers(Modifier.ABSTRACT)
+                .addSuperinterface(ParameterizedTypeName.get(
+                        ClassName.get("org.gradle.api.services", "BuildService"),
+                        ClassName.get("org.gradle.api.services", "BuildServiceParameters")
+                                .nestedClass("None")))
+                .addSuperinterface(AutoCloseable.class)
+                .addField(FieldSpec.builder(
+                                ParameterizedTypeName.get(
+                                        ClassName.get(Map.class), ClassName.get(File.class), mappingClassName),
+                                "mappings",
+                                Modifier.PRIVATE,
+                                Modifier.FINAL)
+                        .initializer("new $T<>()", HashMap.class)
+                        .build())
+                .addMethod(constructor)
+                .addMethod(lease)
+                .addMethod(acquire)
+                .addMethod(release)
+                .addMethod(close)
+                .addMethod(map)
+                .addMethod(unmap)
+                .addType(mapping)
+                .addType(leaseType)
+                .build());
+    }
+
+    private void emitWorkItemEvent(Emitter emitter, TypeElement typeElement) {
+        ClassName jfr = ClassName.get("jdk.jfr", "Event");
+
+        MethodSpec addInputs = MethodSpec.methodBuilder("addInputs")
+                .addParameter(ParameterizedTypeName.get(Iterable.class, File.class), "files")
+                .beginControlFlow("for ($T file : files)", File.class)
+                .addStatement("addInput(file)")
+                .endControlFlow()
+                .build();
+
+        MethodSpec addInput = MethodSpec.methodBuilder("addInput")
+                .addParameter(File.class, "file")
+                .beginControlFlow("if (file != null && file.isFile())")
+                .addStatement("inputFiles++")
+                .addStatement("inputBytes += file.length()")
+                .endControlFlow()
+                .build();
+
+        emitter.emit(TypeSpec.classBuilder(generatedClassName(typeElement, "WorkItemEvent"))
+                .addModifiers(Modifier.FINAL)
+                .superclass(jfr)
+                .addAnnotation(jfrAnnotation("Label", CodeBlock.of("$S", typeElement.getSimpleName() + " work item")))
+                .addAnnotation(jfrAnnotation(
+                        "Description",
+                        CodeBlock.of("$S", "A work item of " + ClassName.get(typeElement).canonicalName())))
+                .addAnnotation(jfrAnnotation("Category", CodeBlock.of("{$S, $S}", "Gradle", "Auto Parallelizable")))
+                .addAnnotation(jfrAnnotation("StackTrace", CodeBlock.of("false")))
+                .addField(jfrField(
+                        ParameterizedTypeName.get(ClassName.get(Class.class), WildcardTypeName.subtypeOf(Object.class)),
+                        "container",
+                        "Container"))
+                .addField(jfrField(ClassName.get(String.class), "taskPath", "Task Path"))
+                .addField(jfrField(TypeName.LONG, "inputFiles", "Input Files"))
+                .addField(jfrField(TypeName.LONG, "inputBytes", "Input Size").toBuilder()
+                        .addAnnotation(ClassName.get("jdk.jfr", "DataAmount"))
+                        .build())
+                .addMethod(addInputs)
+                .addMethod(addInput)
+                .build());
+    }
+
+    private static AnnotationSpec jfrAnnotation(String simpleName, CodeBlock value) {
+        return AnnotationSpec.builder(ClassName.get("jdk.jfr", simpleName))
+                .addMember("value", value)
+                .build();
+    }
+
+    private static FieldSpec jfrField(TypeName type, String name, String label) {
+        return FieldSpec.builder(type, name)
+                .addAnnotation(jfrAnnotation("Label", CodeBlock.of("$S", label)))
+                .build();
+    }
+
+    /**
+     * Keeps the start and end of every work item of the task type, and writes them as a Chrome trace when the build
+     * finishes. The critical path is worked back from the last work item to finish, taking the work item that finished
+     * last before each one started as the one it waited for.
+     */
+    private void emitTraceRecorder(Emitter emitter, TypeElement typeElement) {
+        ClassName recorderClassName = generatedClassName(typeElement, "TraceRecorder");
+        ClassName paramsClassName = recorderClassName.nestedClass("Params");
+        ClassName workItemClassName = recorderClassName.nestedClass("WorkItem");
+        TypeName workItemsType = ParameterizedTypeName.get(ClassName.get(List.class), workItemClassName);
+
+        MethodSpec constructor = MethodSpec.constructorBuilder()
+                .addAnnotation(AnnotationSpec.builder(SuppressWarnings.class)
+                        .addMember("value", "$S", "RedundantModifier")
+                        .build())
+                .addModifiers(Modifier.PUBLIC)
+                .build();
+
+        MethodSpec record = MethodSpec.methodBuilder("record")
+                .addModifiers(Modifier.FINAL)
+                .addParameter(generatedClassName(typeElement, "WorkParams"), "parameters")
+                .addParameter(TypeName.LONG, "startNanos")
+                .addParameter(TypeName.LONG, "endNanos")
+                .addStatement(
+                        "workItems.add(new $T(parameters.getSubmittingTaskPath().get(), "
+                                + "parameters.getTracedShard().getOrNull(), $T.currentThread().getName(), startNanos, "
+                                + "endNanos))",
+                        workItemClassName,
+                        Thread.class)
+                .build();
+
+        MethodSpec close = MethodSpec.methodBuilder("close")
+                .addAnnotation(Override.class)
+                .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+                .addException(IOException.class)
+                .beginControlFlow("if (workItems.isEmpty())")
+                .addStatement("return")
+                .endControlFlow()
+                .addStatement("$T byEnd = new $T<>(workItems)", workItemsType, ArrayList.class)
+                .addStatement("byEnd.sort($T.comparingLong(workItem -> workItem.endNanos))", Comparator.class)
+                .addStatement(
+                        "long baseNanos = byEnd.stream().mapToLong(workItem -> workItem.startNanos).min().getAsLong()")
+                .addStatement(
+                        "$T<$T, $T> threadIds = new $T<>()",
+                        Map.class,
+                        String.class,
+                        Integer.class,
+                        LinkedHashMap.class)
+                .addStatement("$T<$T> events = new $T<>()", List.class, String.class, ArrayList.class)
+                .beginControlFlow("for ($T workItem : byEnd)", workItemClassName)
+                .addStatement(
+                        "int threadId = threadIds.computeIfAbsent(workItem.thread, _thread -> threadIds.size() + 1)")
+                .addStatement(
+                        "events.add($T.format($T.ROOT, $S, escape(workItem.describe()), threadId, "
+                                + "(workItem.startNanos - baseNanos) / 1000, (workItem.endNanos - workItem.startNanos) "
+                                + "/ 1000))",
+                        String.class,
+                        Locale.class,
+                        "{\"name\":\"%s\",\"ph\":\"X\",\"pid\":1,\"tid\":%d,\"ts\":%d,\"dur\":%d}")
+                .endControlFlow()
+                .beginControlFlow(
+                        "for ($T<$T, $T> thread : threadIds.entrySet())", Map.Entry.class, String.class, Integer.class)
+                .addStatement(
+                        "events.add($T.format($T.ROOT, $S, thread.getValue(), escape(thread.getKey())))",
+                        String.class,
+                        Locale.class,
+                        "{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1,\"tid\":%d,\"args\":{\"name\":\"%s\"}}")
+                .endControlFlow()
+                .addStatement("$T traceFile = getParameters().getTraceFile().get().getAsFile()", File.class)
+                .addStatement("$T.createDirectories(traceFile.getParentFile().toPath())", Files.class)
+                .addStatement(
+                        "$T.writeString(traceFile.toPath(), $S + $T.join($S, events) + $S)",
+                        Files.class,
+                        "{\"traceEvents\":[\n",
+                        String.class,
+                        ",\n",
+                        "\n]}\n")
+                .addStatement("$T criticalPath = new $T<>()", workItemsType, ArrayList.class)
+                .beginControlFlow(
+                        "for ($T workItem = byEnd.get(byEnd.size() - 1); workItem != null; "
+                                + "workItem = previous(byEnd, workItem))",
+                        workItemClassName)
+                .addStatement("criticalPath.add(0, workItem)")
+                .endControlFlow()
+                .addStatement(
+                        "$T logger = $T.getLogger($T.class)",
+                        ClassName.get("org.gradle.api.logging", "Logger"),
+                        ClassName.get("org.gradle.api.logging", "Logging"),
+                        recorderClassName)
+                .addStatement(
+                        "logger.lifecycle($S, $S, byEnd.size(), traceFile)",
+                        "{}: wrote a trace of {} work items to {}",
+                        ClassName.get(typeElement).canonicalName())
+                .addStatement(
+                        "logger.lifecycle($S, $S)",
+                        "{}: critical path, each work item starting after the one before it finished:",
+                        ClassName.get(typeElement).canonicalName())
+                .beginControlFlow("for ($T workItem : criticalPath)", workItemClassName)
+                .addStatement(
+                        "logger.lifecycle($S, workItem.describe(), (workItem.startNanos - baseNanos) / 1_000_000, "
+                                + "(workItem.endNanos - workItem.startNanos) / 1_000_000)",
+                        "  {}: started at {} ms, ran for {} ms")
+                .endControlFlow()
+                .build();
+
+        MethodSpec previous = MethodSpec.methodBuilder("previous")
+                .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+                .returns(workItemClassName)
+                .addParameter(workItemsType, "byEnd")
+                .addParameter(workItemClassName, "workItem")
+                .addStatement("$T previous = null", workItemClassName)
+                .beginControlFlow("for ($T candidate : byEnd)", workItemClassName)
+                .beginControlFlow("if (candidate == workItem || candidate.endNanos > workItem.startNanos)")
+                .addStatement("break")
+                .endControlFlow()
+                .addStatement("previous = candidate")
+                .endControlFlow()
+                .addStatement("return previous")
+                .build();
+
+        MethodSpec escape = MethodSpec.methodBuilder("escape")
+                .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+                .returns(String.class)
+                .addParameter(String.class, "value")
+                .addStatement("return value.replace($S, $S).replace($S, $S)", "\\", "\\\\", "\"", "\\\"")
+                .build();
+
+        TypeSpec params = TypeSpec.interfaceBuilder(paramsClassName)
+                .addSuperinterface(ClassName.get("org.gradle.api.services", "BuildServiceParameters"))
+                .addMethod(abstractGetter(ClassName.get("org.gradle.api.file", "RegularFileProperty"), "getTraceFile"))
+                .build();
+
+        TypeSpec.Builder workItem = TypeSpec.classBuilder(workItemClassName)
+                .addModifiers(Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL);
+        MethodSpec.Builder workItemConstructor = MethodSpec.constructorBuilder().addModifiers(Modifier.PRIVATE);
+
+        Map<String, TypeName> workItemFields = ImmutableMap.of(
+                "task", ClassName.get(String.class),
+                "shard", ClassName.get(Integer.class),
+                "thread", ClassName.get(String.class),
+                "startNanos", TypeName.LONG,
+                "endNanos", TypeName.LONG);
+
+        for (Map.Entry<String, TypeName> field : workItemFields.entrySet()) {
+            workItem.addField(field.getValue(), field.getKey(), Modifier.PRIVATE, Modifier.FINAL);
+            workItemConstructor
+                    .addParameter(field.getValue(), field.getKey())
+                    .addStatement("this.$N = $N", field.getKey(), field.getKey());
+        }
+
+        workItem.addMethod(workItemConstructor.build())
+                .addMethod(MethodSpec.methodBuilder("describe")
+                        .addModifiers(Modifier.PRIVATE)
+                        .returns(String.class)
+                        .addStatement("return shard == null ? task : task + $S + shard", " shard ")
+                        .build());
+
+        emitter.emit(TypeSpec.classBuilder(recorderClassName)
+                .addModifiers(Modifier.ABSTRACT)
+                .addSuperinterface(ParameterizedTypeName.get(
+                        ClassName.get("org.gradle.api.services", "BuildService"), paramsClassName))
+                .addSuperinterface(AutoCloseable.class)
+                .addField(FieldSpec.builder(
+                                ParameterizedTypeName.get(ClassName.get(Queue.class), workItemClassName),
+                                "workItems",
+                                Modifier.PRIVATE,
+                                Modifier.FINAL)
+                        .initializer("new $T<>()", ConcurrentLinkedQueue.class)
+                        .build())
+                .addMethod(constructor)
+                .addMethod(record)
+                .addMethod(close)
+                .addMethod(previous)
+                .addMethod(escape)
+                .addType(params)
+                .addType(workItem.build())
+                .build());
+    }
+
+    /**
+     * The benchmark is abstract, so that it can be subclassed in the JMH source set to fill in {@code Params} with
+     * fixture inputs. It then calls {@code action} directly, without any of the Gradle machinery around it.
+     */
+    private void emitBenchmark(Emitter emitter, TypeElement typeElement, TypeElement params) {
+        ExecutableElement actionMethod = Iterables.getOnlyElement(findActionMethod(typeElement));
+        ClassName benchmarkClassName = generatedClassName(typeElement, "Benchmark");
+        ClassName injectedClassName = benchmarkClassName.nestedClass("Injected");
+        ClassName project = ClassName.get("org.gradle.api", "Project");
+
+        List<MethodSpec> injectableMethods = actionMethod.getParameters().stream()
+                .filter(AutoParallelizableProcessor::isInjectable)
+                .filter(injectable -> !isMappedFiles(injectable))
+                .map(injectable ->
+                        injectMethod(ClassName.get(injectable.asType()), getMethodNameBasedOnType(injectable)))
+                .collect(Collectors.toList());
+
+        TypeSpec.Builder benchmarkType = TypeSpec.classBuilder(benchmarkClassName)
+                .addModifiers(Modifier.PUBLIC, Modifier.ABSTRACT)
+                .addAnnotation(AnnotationSpec.builder(jmh("State"))
+                        .addMember("value", "$T.Benchmark", jmh("Scope"))
+                        .build())
+                .addField(project, "project", Modifier.PRIVATE)
+                .addField(ClassName.get(params), "params", Modifier.PRIVATE);
+
+        MethodSpec.Builder setUp = MethodSpec.methodBuilder("setUp")
+                .addAnnotation(AnnotationSpec.builder(jmh("Setup"))
+                        .addMember("value", "$T.Trial", jmh("Level"))
+                        .build())
+                .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+                .addException(IOException.class)
+                .addStatement(
+                        "project = $T.builder().withProjectDir($T.createTempDirectory($S).toFile()).build()",
+                        ClassName.get("org.gradle.testfixtures", "ProjectBuilder"),
+                        Files.class,
+                        benchmarkClassName.simpleName())
+                .addStatement("params = project.getObjects().newInstance($T.class)", ClassName.get(params));
+
+        if (!injectableMethods.isEmpty()) {
+            benchmarkType
+                    .addField(injectedClassName, "injected", Modifier.PRIVATE)
+                    .addType(TypeSpec.classBuilder(injectedClassName)
+                            .addModifiers(Modifier.PUBLIC, Modifier.ABSTRACT, Modifier.STATIC)
+                            .addMethods(injectableMethods)
+                            .build());
+            setUp.addStatement("injected = project.getObjects().newInstance($T.class)", injectedClassName);
+        }
+
+        if (hasShardOutput(actionMethod)) {
+            benchmarkType.addField(File.class, "shardOutput", Modifier.PRIVATE);
+            setUp.addStatement("shardOutput = project.mkdir($S)", "shard-output");
+        }
+
+        if (hasSharedResources(typeElement)) {
+            // Kept for the whole trial, so iterations measure the action with warm shared resources
+            ClassName sharedResourcesClassName = generatedClassName(typeElement, "SharedResources");
+            benchmarkType.addField(sharedResourcesClassName, "sharedResources", Modifier.PRIVATE);
+            setUp.addStatement(
+                    "sharedResources = project.getGradle().getSharedServices().registerIfAbsent($S, $T.class, "
+                            + "spec -> {}).get()",
+                    sharedResourcesClassName.canonicalName(),
+                    sharedResourcesClassName);
+        }
+
+        if (mapsFiles(typeElement)) {
+            ClassName mappedFilesClassName = generatedClassName(typeElement, "MappedFiles");
+            benchmarkType.addField(mappedFilesClassName, "mappedFiles", Modifier.PRIVATE);
+            setUp.addStatement(
+                    "mappedFiles = project.getGradle().getSharedServices().registerIfAbsent($S, $T.class, "
+                            + "spec -> {}).get()",
+                    mappedFilesClassName.canonicalName(),
+                    mappedFilesClassName);
+        }
+
+        setUp.addStatement("configure(project, params)");
+
+        MethodSpec configure = MethodSpec.methodBuilder("configure")
+                .addModifiers(Modifier.PROTECTED, Modifier.ABSTRACT)
+                .addParameter(project, "project")
+                .addParameter(ClassName.get(params), "params")
+                .build();
+
+        CodeBlock invocation = invokeStatic(typeElement, actionMethod, CodeBlock.of("injected."), parameter -> {
+            if (isShared(parameter)) {
+                return CodeBlock.of("sharedResources.$N()", parameter.getSimpleName());
+            }
+
+            if (isMappedFiles(parameter)) {
+                return CodeBlock.of("lease");
+            }
+
+            return isShardOutput(parameter) ? CodeBlock.of("shardOutput") : CodeBlock.of("params");
+        });
+
+        MethodSpec.Builder action = MethodSpec.methodBuilder("action")
+                .addAnnotation(jmh("Benchmark"))
+                .addModifiers(Modifier.PUBLIC, Modifier.FINAL);
+
+        if (mapsFiles(typeElement)) {
+            action.beginControlFlow(
+                            "try ($T lease = mappedFiles.lease())",
+                            generatedClassName(typeElement, "MappedFiles").nestedClass("Lease"))
+                    .addStatement("$L", invocation)
+                    .endControlFlow();
+        } else {
+            action.addStatement("$L", invocation);
+        }
+
+        MethodSpec tearDown = MethodSpec.methodBuilder("tearDown")
+                .addAnnotation(AnnotationSpec.builder(jmh("TearDown"))
+                        .addMember("value", "$T.Trial", jmh("Level"))
+                        .build())
+                .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+                .addStatement("project.delete(project.getProjectDir())")
+                .build();
+
+        emitter.emit(benchmarkType
+                .addMethod(setUp.build())
+                .addMethod(configure)
+                .addMethod(action.build())
+                .addMethod(tearDown)
+                .build());
+    }
+
+    private static ClassName jmh(String annotation) {
+        return ClassName.get("org.openjdk.jmh.annotations", annotation);
+    }
+
+    private void emitSubmissionProfiler(Emitter emitter, TypeElement typeElement) {
+        ClassName profilerClassName = generatedClassName(typeElement, "SubmissionProfiler");
+        List<String> totals = List.of("submissions", "submitNanos", "queuedNanos", "runNanos");
+
+        TypeSpec.Builder profilerType = TypeSpec.classBuilder(profilerClassName)
+                .addModifiers(Modifier.ABSTRACT)
+                .addSuperinterface(ParameterizedTypeName.get(
+                        ClassName.get("org.gradle.api.services", "BuildService"),
+                        ClassName.get("org.gradle.api.services", "BuildServiceParameters", "None")))
+                .addSuperinterface(AutoCloseable.class);
+
+        for (String total : totals) {
+            profilerType.addField(FieldSpec.builder(AtomicLong.class, total, Modifier.PRIVATE, Modifier.FINAL)
+                    .initializer("new $T()", AtomicLong.class)
+                    .build());
+        }
+
+        profilerType.addField(FieldSpec.builder(
+                        ParameterizedTypeName.get(Map.class, Long.class, Long.class),
+                        "unmatchedNanos",
+                        Modifier.PRIVATE,
+                        Modifier.FINAL)
+                .initializer("new $T<>()", HashMap.class)
+                .build());
+
+        MethodSpec constructor = MethodSpec.constructorBuilder()
+                .addAnnotation(AnnotationSpec.builder(SuppressWarnings.class)
+                        .addMember("value", "$S", "RedundantModifier")
+                        .build())
+                .addModifiers(Modifier.PUBLIC)
+                .build();
+
+        MethodSpec nextSubmission = MethodSpec.methodBuilder("nextSubmission")
+                .addModifiers(Modifier.FINAL)
+                .returns(TypeName.LONG)
+                .addStatement("return submissions.incrementAndGet()")
+                .build();
+
+        MethodSpec recordSubmit = MethodSpec.methodBuilder("recordSubmit")
+                .addModifiers(Modifier.FINAL)
+                .addParameter(TypeName.LONG, "submission")
+                .addParameter(TypeName.LONG, "nanos")
+                .addStatement("submitNanos.addAndGet(nanos)")
+                .addStatement("recordQueued(submission, -nanos)")
+                .build();
+
+        MethodSpec recordStart = MethodSpec.methodBuilder("recordStart")
+                .addModifiers(Modifier.FINAL)
+                .addParameter(TypeName.LONG, "submission")
+                .addParameter(TypeName.LONG, "nanosSinceSubmitted")
+                .addStatement("recordQueued(submission, nanosSinceSubmitted)")
+                .build();
+
+        // A work item can start before its submission returns, so whichever of the two comes second works out how
+        // long the work item was queued: the time from the stamp to its start, less the time it took to submit
+        MethodSpec recordQueued = MethodSpec.methodBuilder("recordQueued")
+                .addModifiers(Modifier.PRIVATE, Modifier.SYNCHRONIZED)
+                .addParameter(TypeName.LONG, "submission")
+                .addParameter(TypeName.LONG, "nanos")
+                .addStatement("$T otherNanos = unmatchedNanos.remove(submission)", Long.class)
+                .beginControlFlow("if (otherNanos == null)")
+                .addStatement("unmatchedNanos.put(submission, nanos)")
+                .nextControlFlow("else")
+                .addStatement("queuedNanos.addAndGet($T.max(0, nanos + otherNanos))", Math.class)
+                .endControlFlow()
+                .build();
+
+        MethodSpec recordRun = MethodSpec.methodBuilder("recordRun")
+                .addModifiers(Modifier.FINAL)
+                .addParameter(TypeName.LONG, "nanos")
+                .addStatement("runNanos.addAndGet(nanos)")
+                .build();
+
+        MethodSpec close = MethodSpec.methodBuilder("close")
+                .addAnnotation(Override.class)
+                .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+                .addStatement("long count = submissions.get()")
+                .beginControlFlow("if (count == 0)")
+                .addStatement("return")
+                .endControlFlow()
+                .addStatement(
+                        "$T.getLogger($T.class).lifecycle($S, $S, count, averageMillis(submitNanos.get(), count), "
+                                + "averageMillis(queuedNanos.get(), count), averageMillis(runNanos.get(), count))",
+                        ClassName.get("org.gradle.api.logging", "Logging"),
+                        profilerClassName,
+                        "{}: {} work items, average ms submitting {}, queued {}, running {}",
+                        ClassName.get(typeElement).canonicalName())
+                .build();
+
+        MethodSpec averageMillis = MethodSpec.methodBuilder("averageMillis")
+                .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+                .returns(String.class)
+                .addParameter(TypeName.LONG, "nanos")
+                .addParameter(TypeName.LONG, "count")
+                .addStatement(
+                        "return $T.format($T.ROOT, $S, nanos / 1e6 / count)", String.class, Locale.class, "%.2f")
+                .build();
+
+        emitter.emit(profilerType
+                .addMethod(constructor)
+                .addMethod(nextSubmission)
+                .addMethod(recordSubmit)
+                .addMethod(recordStart)
+                .addMethod(recordRun)
+                .addMethod(recordQueued)
+                .addMethod(close)
+                .addMethod(averageMillis)
+                .build());
+    }
+
+    private void emitWorkLimiter(Emitter emitter, TypeElement typeElement) {
+        AutoParallelizable annotation = typeElement.getAnnotation(AutoParallelizable.class);
+
+        TypeSpec.Builder workLimiterType = TypeSpec.classBuilder(generatedClassName(typeElement, "WorkLimiter"))
+                .addModifiers(Modifier.ABSTRACT)
+                .addSuperinterface(ParameterizedTypeName.get(
+                        ClassName.get("org.gradle.api.services", "BuildService"),
+                        ClassName.get("org.gradle.api.services", "BuildServiceParameters", "None")));
+
+        CodeBlock.Builder run = CodeBlock.builder();
+        CodeBlock.Builder release = CodeBlock.builder();
+
+        if (annotation.maxConcurrentWorkItems() > 0) {
+            workLimiterType.addField(FieldSpec.builder(Semaphore.class, "workItems", Modifier.PRIVATE, Modifier.FINAL)
+                    .initializer("new $T($L, true)", Semaphore.class, annotation.maxConcurrentWorkItems())
+                    .build());
+
+            run.addStatement("workItems.acquireUninterruptibly()").beginControlFlow("try");
+            release.nextControlFlow("finally")
+                    .addStatement("workItems.release()")
+                    .endControlFlow();
+        }
+
+        if (annotation.workItemHeapMb() > 0) {
+            workLimiterType
+                    .addField(FieldSpec.builder(TypeName.INT, "heapBudgetMb", Modifier.PRIVATE, Modifier.FINAL)
+                            .initializer(
+                                    "(int) $T.min($T.MAX_VALUE, $T.getRuntime().maxMemory() / (1024 * 1024))",
+                                    Math.class,
+                                    Integer.class,
+                                    Runtime.class)
+                            .build())
+                    .addField(FieldSpec.builder(Semaphore.class, "heapMb", Modifier.PRIVATE, Modifier.FINAL)
+                            .initializer("new $T(heapBudgetMb, true)", Semaphore.class)
+                            .build());
+
+            // A work item that wants more than the whole budget must still be able to run on its own
+            run.addStatement(
+                            "int workItemHeapMb = $T.min($L, heapBudgetMb)", Math.class, annotation.workItemHeapMb())
+                    .addStatement("heapMb.acquireUninterruptibly(workItemHeapMb)")
+                    .beginControlFlow("try");
+            release = CodeBlock.builder()
+                    .nextControlFlow("finally")
+                    .addStatement("heapMb.release(workItemHeapMb)")
+                    .endControlFlow()
+                    .add(release.build());
+        }
+
+        MethodSpec constructor = MethodSpec.constructorBuilder()
+                .addAnnotation(AnnotationSpec.builder(SuppressWarnings.class)
+                        .addMember("value", "$S", "RedundantModifier")
+                        .build())
+                .addModifiers(Modifier.PUBLIC)
+                .build();
+
+        MethodSpec runMethod = MethodSpec.methodBuilder("run")
+                .addModifiers(Modifier.FINAL)
+                .addParameter(Runnable.class, "workItem")
+                .addCode(run.build())
+                .addStatement("workItem.run()")
+                .addCode(release.build())
+                .build();
+
+        emitter.emit(workLimiterType.addMethod(constructor).addMethod(runMethod).build());
+    }
+
+    private void declareWorkQueue(
+            CodeBlock.Builder builder, TypeElement typeElement, TypeElement params, MethodSpec workerExecutor) {
+        AutoParallelizable annotation = typeElement.getAnnotation(AutoParallelizable.class);
+        Optional<ExecutableElement> workerClasspath = findWorkerClasspathProperties(params).stream().findFirst();
+        ClassName workQueue = ClassName.get("org.gradle.workers", "WorkQueue");
+
+        switch (annotation.isolation()) {
+            case NONE:
+                builder.addStatement("$T workQueue = $N().noIsolation()", workQueue, workerExecutor);
+                return;
+            case CLASSLOADER:
+                if (workerClasspath.isEmpty()) {
+                    builder.addStatement("$T workQueue = $N().classLoaderIsolation()", workQueue, workerExecutor);
+                    return;
+                }
+                builder.addStatement(
+                        "$T workQueue = $N().classLoaderIsolation(spec -> spec.getClasspath().from(this.$L()))",
+                        workQueue,
+                        workerExecutor,
+                        workerClasspath.get().getSimpleName());
+                return;
+            case PROCESS:
+                builder.add("$T workQueue = $N().processIsolation(spec -> {\n", workQueue, workerExecutor)
+                        .indent();
+                workerClasspath.ifPresent(classpath ->
+                        builder.addStatement("spec.getClasspath().from(this.$L())", classpath.getSimpleName()));
+                if (!annotation.maxHeapSize().isEmpty() || annotation.jvmArgs().length > 0) {
+                    builder.add("spec.forkOptions(forkOptions -> {\n").indent();
+                    if (!annotation.maxHeapSize().isEmpty()) {
+                        builder.addStatement("forkOptions.setMaxHeapSize($S)", annotation.maxHeapSize());
+                    }
+                    if (annotation.jvmArgs().length > 0) {
+                        builder.addStatement(
+                                "forkOptions.jvmArgs($L)",
+                                Stream.of(annotation.jvmArgs())
+                                        .map(jvmArg -> CodeBlock.of("$S", jvmArg))
+                                        .collect(CodeBlock.joining(", ")));
+                    }
+                    builder.unindent().add("});\n");
+                }
+                builder.unindent().add("});\n");
+                return;
+        }
+
+        throw new IllegalStateException("Unknown isolation mode " + annotation.isolation());
+    }
+
+    private static TypeName shardedItemType(ExecutableElement shardedProperty) {
+        List<? extends TypeMirror> typeArguments =
+                MoreTypes.asDeclared(shardedProperty.getReturnType()).getTypeArguments();
+        return typeArguments.isEmpty() ? ClassName.get(File.class) : TypeName.get(typeArguments.get(0));
+    }
+
+    private static String propertyName(ExecutableElement getter) {
+        String name = getter.getSimpleName().toString();
+        String withoutPrefix = name.startsWith("get") && name.length() > 3 ? name.substring(3) : name;
+        return Character.toLowerCase(withoutPrefix.charAt(0)) + withoutPrefix.substring(1);
+    }
+
+    private static String capitalize(String name) {
+        return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+    }
+
+    private void copyParams(
+            CodeBlock.Builder builder,
+            TypeElement typeElement,
+            TypeElement params,
+            Map<ExecutableElement, String> valueOverrides,
+            Set<ExecutableElement> excludedProperties,
+            Map<TypeElement, String> copyMethodNames) {
+        handleParamsLikeElement(
+                builder, "params", "this", params, valueOverrides, excludedProperties, copyMethodNames);
+
+        for (SharedService sharedService : sharedServices(typeElement)) {
+            if (sharedService.passedToWorkItems()) {
+                builder.addStatement("params.$L().set(this.$L)", sharedService.getterName(), sharedService.name());
+            }
+        }
+
+        if (accountsAllocations(typeElement)) {
+            builder.addStatement("params.getAllocationSamples().set(this.allocationReport.get().samplesDirectory())");
+        }
+
+        if (isTraced(typeElement) || emitsJfrEvents(typeElement)) {
+            builder.addStatement("params.getSubmittingTaskPath().set(getPath())");
+        }
+    }
+
+    /**
+     * Submissions are stamped right before {@code submit}, and the profiler subtracts how long each one took to submit
+     * from the time until it started, so that what remains is the time it spent queued.
+     */
+    private static void startSubmission(CodeBlock.Builder builder, TypeElement typeElement) {
+        if (isProfiled(typeElement)) {
+            builder.addStatement("long submission = this.submissionProfiler.get().nextSubmission()")
+                    .addStatement("long submitStartNanos = $T.nanoTime()", System.class);
+        }
+    }
+
+    private static void identifySubmission(CodeBlock.Builder builder, TypeElement typeElement) {
+        if (isProfiled(typeElement)) {
+            builder.addStatement("params.getSubmission().set(submission)")
+                    .addStatement("params.getSubmittedNanos().set(submitStartNanos)");
+        }
+    }
+
+    private static void endSubmission(CodeBlock.Builder builder, TypeElement typeElement) {
+        if (isProfiled(typeElement)) {
+            builder.addStatement(
+                    "this.submissionProfiler.get().recordSubmit(submission, $T.nanoTime() - submitStartNanos)",
+                    System.class);
+        }
+    }
+
+    private void handleParamsLikeElement(
+            CodeBlock.Builder builder,
+            String writerContext,
+            String readerContext,
+            TypeElement paramsLikeElement,
+            Map<ExecutableElement, String> valueOverrides,
+            Set<ExecutableElement> excludedProperties,
+            Map<TypeElement, String> copyMethodNames) {
+        paramsLikeElement.getEnclosedElements().stream()
+                .filter(element -> element.getKind().equals(ElementKind.METHOD))
+                .map(ExecutableElement.class::cast)
+                .forEach(possibleMethod -> {
+                    if (!isCopiedProperty(possibleMethod) || excludedProperties.contains(possibleMethod)) {
+                        return;
+                    }
+
+                    if (isNested(possibleMethod) && !returnsSettableProperty(possibleMethod)) {
+                        // Each nested type gets one copy method, so huge params are not copied in one huge method
+                        builder.addStatement(
+                                "$L($L.$L(), $L.$L())",
+                                copyMethodName(
+                                        copyMethodNames, MoreTypes.asTypeElement(possibleMethod.getReturnType())),
+                                writerContext,
+                                possibleMethod.getSimpleName(),
+                                readerContext,
+                                possibleMethod.getSimpleName());
+                        return;
+                    }
+
+                    Name simpleName = possibleMethod.getSimpleName();
+
+                    String returnType = possibleMethod.getReturnType().toString();
+
+                    String setterMethod = "set";
+
+                    if (returnType.endsWith("ConfigurableFileCollection")) {
+                        setterMethod = "from";
+                    }
+
+                    String value = valueOverrides.getOrDefault(possibleMethod, readerContext + "." + simpleName + "()");
+
+                    builder.add("$L.$L().$L($L);", writerContext, simpleName, setterMethod, value);
+                });
+    }
+
+    private boolean isCopiedProperty(ExecutableElement method) {
+        return !method.getModifiers().contains(Modifier.DEFAULT)
+                && !method.getModifiers().contains(Modifier.PRIVATE)
+                && method.getParameters().isEmpty()
+                && (isNested(method) || returnsSettableProperty(method));
+    }
+
+    /**
+     * The properties of {@code Params} that {@code action} and {@code merge} never read, when pruning is turned on and
+     * every use of {@code Params} can be followed. Properties the generated code itself reads are always copied.
+     */
+    private Set<ExecutableElement> unreadProperties(TypeElement typeElement, TypeElement params) {
+        if (!typeElement.getAnnotation(AutoParallelizable.class).pruneUnreadProperties()) {
+            return Set.of();
+        }
+
+        List<ExecutableElement> entryPoints = Stream.concat(
+                        findActionMethod(typeElement).stream(), findMethodsNamed(typeElement, "merge").stream())
+                .collect(Collectors.toList());
+
+        Optional<Set<ExecutableElement>> readProperties =
+                ParamsUsage.readProperties(processingEnv, typeElement, params, entryPoints);
+
+        if (readProperties.isEmpty()) {
+            note(typeElement, "Copying every property of Params, as it is used in ways that could not be followed");
+            return Set.of();
+        }
+
+        Set<ExecutableElement> generatedCodeReads = new HashSet<>();
+        generatedCodeReads.addAll(findShardedProperties(params));
+        generatedCodeReads.addAll(findIncrementalProperties(params));
+        generatedCodeReads.addAll(findWorkItemCacheProperties(params));
+        generatedCodeReads.addAll(findWorkerClasspathProperties(params));
+
+        if (typeElement.getAnnotation(AutoParallelizable.class).deduplicate()) {
+            generatedCodeReads.addAll(findOutputProperties(params));
+        }
+
+        List<ExecutableElement> unreadProperties = params.getEnclosedElements().stream()
+                .filter(element -> element.getKind().equals(ElementKind.METHOD))
+                .map(ExecutableElement.class::cast)
+                .filter(this::isCopiedProperty)
+                .filter(property -> !readProperties.get().contains(property))
+                .filter(property -> !generatedCodeReads.contains(property))
+                .collect(Collectors.toList());
+
+        if (!unreadProperties.isEmpty()) {
+            note(
+                    typeElement,
+                    "Not copying properties of Params that are never read into work items: "
+                            + unreadProperties.stream()
+                                    .map(property -> property.getSimpleName().toString())
+                                    .collect(Collectors.joining(", ")));
+        }
+
+        return Set.copyOf(unreadProperties);
+    }
+
+    private static String copyMethodName(
+            Map<TypeElement, String> copyMethodNames, TypeElement nestedParamsLikeElement) {
+        return copyMethodNames.computeIfAbsent(nestedParamsLikeElement, element -> {
+            String name = "copy" + element.getSimpleName();
+            String uniqueName = name;
+
+            for (int i = 2; copyMethodNames.containsValue(uniqueName); i++) {
+                uniqueName = name + i;
+            }
+
+            return uniqueName;
+        });
+    }
+
+    private List<MethodSpec> copyMethods(Map<TypeElement, String> copyMethodNames) {
+        List<MethodSpec> copyMethods = new ArrayList<>();
+        List<TypeElement> nestedTypes = new ArrayList<>(copyMethodNames.keySet());
+
+        // Copying one nested type can find more of them, which are then copied in turn
+        while (!nestedTypes.isEmpty()) {
+            TypeElement nestedType = nestedTypes.remove(0);
+
+            CodeBlock.Builder body = CodeBlock.builder();
+            handleParamsLikeElement(body, "to", "from", nestedType, Map.of(), Set.of(), copyMethodNames);
+
+            copyMethods.add(MethodSpec.methodBuilder(copyMethodNames.get(nestedType))
+                    .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+                    .addParameter(ClassName.get(nestedType), "to")
+                    .addParameter(ClassName.get(nestedType), "from")
+                    .addCode(body.build())
+                    .build());
+
+            copyMethodNames.keySet().stream()
+                    .skip(copyMethods.size() + nestedTypes.size())
+                    .forEach(nestedTypes::add);
+        }
+
+        return copyMethods;
+    }
+
+    private static boolean isFileCollection(TypeMirror type) {
+        return isOfType(type, "org.gradle.api.file.ConfigurableFileCollection");
+    }
+
+    private static boolean isListProperty(TypeMirror type) {
+        return isOfType(type, "org.gradle.api.provider.ListProperty");
+    }
+
+    private static boolean isOfType(TypeMirror type, String qualifiedName) {
+        return type.getKind().equals(TypeKind.DECLARED)
+                && MoreTypes.asTypeElement(type).getQualifiedName().contentEquals(qualifiedName);
+    }
+
+    private boolean returnsSettableProperty(ExecutableElement method) {
+        return settableProperties.isSettable(method.getReturnType());
+    }
+
+    private static MethodSpec abstractGetter(TypeName returns, String methodName) {
+        return MethodSpec.methodBuilder(methodName)
+                .addModifiers(Modifier.PUBLIC, Modifier.ABSTRACT)
+                .returns(returns)
+                .build();
+    }
+
+    private static MethodSpec injectMethod(TypeName returns, String methodName) {
+        return MethodSpec.methodBuilder(methodName)
+                .addAnnotation(ClassName.get("javax.inject", "Inject"))
+                .addModifiers(Modifier.PROTECTED, Modifier.ABSTRACT)
+                .returns(returns)
+                .build();
+    }
+
+    private void error(Element element, String error) {
+        processingEnv.getMessager().printMessage(Kind.ERROR, error, element);
+    }
+
+    private void note(Element element, String note) {
+        processingEnv.getMessager().printMessage(Kind.NOTE, note, element);
     }
 }
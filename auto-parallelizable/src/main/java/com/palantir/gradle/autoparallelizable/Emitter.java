@@ -16,21 +16,19 @@
 
 package com.palantir.gradle.autoparallelizable;
 
-import com.palantir.goethe.Goethe;
 import com.squareup.javapoet.AnnotationSpec;
 import com.squareup.javapoet.JavaFile;
 import com.squareup.javapoet.TypeSpec;
-import javax.annotation.processing.Filer;
 import javax.annotation.processing.Generated;
 import javax.lang.model.element.Element;
 
 final class Emitter {
-    private final Filer filer;
+    private final GeneratedSources generatedSources;
     private final String packageName;
     private final Element originatingElement;
 
-    Emitter(Filer filer, String packageName, Element originatingElement) {
-        this.filer = filer;
+    Emitter(GeneratedSources generatedSources, String packageName, Element originatingElement) {
+        this.generatedSources = generatedSources;
         this.packageName = packageName;
         this.originatingElement = originatingElement;
     }
@@ -45,8 +43,9 @@ final class Emitter {
 
         JavaFile javaFile = JavaFile.builder(packageName, newTypeSpec)
                 .skipJavaLangImports(true)
+                .indent("    ")
                 .build();
 
-        Goethe.formatAndEmit(javaFile, filer);
+        generatedSources.add(javaFile);
     }
 }
@@ -0,0 +1,111 @@
+/*
+ * (c) Copyright 2026 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.gradle.autoparallelizable;
+
+import com.google.common.base.Throwables;
+import com.palantir.goethe.Goethe;
+import com.squareup.javapoet.JavaFile;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javax.annotation.processing.Filer;
+import javax.lang.model.element.Element;
+import javax.tools.JavaFileObject;
+
+/**
+ * Formats generated files on a small pool of threads, then writes them through the {@link Filer} in the order they
+ * were added when {@link #flush()} is called on the javac thread.
+ */
+final class GeneratedSources {
+    private static final int MAX_FORMATTING_THREADS = 4;
+
+    private final Filer filer;
+    private final boolean format;
+    private final List<JavaFile> javaFiles = new ArrayList<>();
+    private final List<Future<String>> sources = new ArrayList<>();
+    private ExecutorService formatters;
+
+    GeneratedSources(Filer filer, boolean format) {
+        this.filer = filer;
+        this.format = format;
+    }
+
+    void add(JavaFile javaFile) {
+        javaFiles.add(javaFile);
+
+        if (!format) {
+            // Goethe and the formatter are only loaded once a file is formatted
+            sources.add(CompletableFuture.completedFuture(javaFile.toString()));
+            return;
+        }
+
+        if (formatters == null) {
+            formatters = Executors.newFixedThreadPool(
+                    Math.min(MAX_FORMATTING_THREADS, Runtime.getRuntime().availableProcessors()), runnable -> {
+                        Thread thread = new Thread(runnable, "auto-parallelizable-formatter");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+        }
+
+        sources.add(formatters.submit(() -> Goethe.formatAsString(javaFile)));
+    }
+
+    void flush() {
+        try {
+            for (int i = 0; i < javaFiles.size(); i++) {
+                write(javaFiles.get(i), sources.get(i));
+            }
+        } finally {
+            javaFiles.clear();
+            sources.clear();
+
+            if (formatters != null) {
+                formatters.shutdownNow();
+                formatters = null;
+            }
+        }
+    }
+
+    private void write(JavaFile javaFile, Future<String> source) {
+        String qualifiedName = javaFile.packageName + "." + javaFile.typeSpec.name;
+
+        try {
+            JavaFileObject sourceFile = filer.createSourceFile(
+                    qualifiedName, javaFile.typeSpec.originatingElements.toArray(new Element[0]));
+
+            try (Writer writer = sourceFile.openWriter()) {
+                writer.write(source.get());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write " + qualifiedName, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while formatting " + qualifiedName, e);
+        } catch (ExecutionException e) {
+            Throwables.throwIfUnchecked(e.getCause());
+            throw new IllegalStateException("Could not format " + qualifiedName, e.getCause());
+        }
+    }
+}
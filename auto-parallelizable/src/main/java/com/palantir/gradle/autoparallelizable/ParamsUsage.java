@@ -0,0 +1,164 @@
+/*
+ * (c) Copyright 2026 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.gradle.autoparallelizable;
+
+import com.sun.source.tree.ExpressionTree;
+import com.sun.source.tree.IdentifierTree;
+import com.sun.source.tree.MemberSelectTree;
+import com.sun.source.tree.MethodInvocationTree;
+import com.sun.source.util.TreePath;
+import com.sun.source.util.TreePathScanner;
+import com.sun.source.util.Trees;
+import java.lang.reflect.Field;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.util.Types;
+
+/**
+ * Finds the {@code Params} getters read by the given methods, following calls to other methods of the container and
+ * to default methods of {@code Params}. Gives up if {@code Params} is used in any other way than calling a method on it
+ * or passing it to a method that is followed, as it could then be read anywhere.
+ */
+final class ParamsUsage extends TreePathScanner<Void, Void> {
+    private final Trees trees;
+    private final Types types;
+    private final TypeElement container;
+    private final TypeElement params;
+    private final Set<ExecutableElement> readProperties = new HashSet<>();
+    private final Set<ExecutableElement> followedMethods = new HashSet<>();
+    private final Deque<ExecutableElement> methodsToScan = new ArrayDeque<>();
+    private boolean escapes;
+
+    private ParamsUsage(Trees trees, Types types, TypeElement container, TypeElement params) {
+        this.trees = trees;
+        this.types = types;
+        this.container = container;
+        this.params = params;
+    }
+
+    static Optional<Set<ExecutableElement>> readProperties(
+            ProcessingEnvironment processingEnv,
+            TypeElement container,
+            TypeElement params,
+            Collection<ExecutableElement> entryPoints) {
+        Optional<Trees> trees = trees(processingEnv);
+
+        if (trees.isEmpty()) {
+            return Optional.empty();
+        }
+
+        ParamsUsage usage = new ParamsUsage(trees.get(), processingEnv.getTypeUtils(), container, params);
+        entryPoints.forEach(usage::follow);
+
+        while (!usage.methodsToScan.isEmpty() && !usage.escapes) {
+            TreePath method = trees.get().getPath(usage.methodsToScan.pop());
+
+            if (method == null) {
+                return Optional.empty();
+            }
+
+            usage.scan(method, null);
+        }
+
+        return usage.escapes ? Optional.empty() : Optional.of(usage.readProperties);
+    }
+
+    private static Optional<Trees> trees(ProcessingEnvironment processingEnv) {
+        try {
+            return Optional.of(Trees.instance(processingEnv));
+        } catch (IllegalArgumentException e) {
+            // Gradle wraps the processing environment of incremental processors, which Trees does not accept
+            try {
+                Field delegate = processingEnv.getClass().getDeclaredField("delegate");
+                delegate.setAccessible(true);
+                return trees((ProcessingEnvironment) delegate.get(processingEnv));
+            } catch (ReflectiveOperationException | RuntimeException _unwrapFailure) {
+                return Optional.empty();
+            }
+        }
+    }
+
+    @Override
+    public Void visitMethodInvocation(MethodInvocationTree node, Void _unused) {
+        Element invoked = trees.getElement(getCurrentPath());
+        boolean followed = false;
+
+        if (invoked instanceof ExecutableElement) {
+            ExecutableElement method = (ExecutableElement) invoked;
+
+            if (method.getEnclosingElement().equals(params)) {
+                readProperties.add(method);
+                followed = method.getModifiers().contains(Modifier.DEFAULT) && follow(method);
+            } else if (method.getEnclosingElement().equals(container)) {
+                followed = follow(method);
+            }
+        }
+
+        ExpressionTree methodSelect = node.getMethodSelect();
+
+        if (!(methodSelect instanceof MemberSelectTree
+                && isParams(((MemberSelectTree) methodSelect).getExpression()))) {
+            scan(methodSelect, null);
+        }
+
+        for (ExpressionTree argument : node.getArguments()) {
+            if (!(followed && isParams(argument))) {
+                scan(argument, null);
+            }
+        }
+
+        return null;
+    }
+
+    @Override
+    public Void visitIdentifier(IdentifierTree node, Void _unused) {
+        if (isParams(node)) {
+            escapes = true;
+        }
+
+        return null;
+    }
+
+    private boolean follow(ExecutableElement method) {
+        if (followedMethods.add(method)) {
+            methodsToScan.push(method);
+        }
+
+        return true;
+    }
+
+    private boolean isParams(ExpressionTree expression) {
+        if (!(expression instanceof IdentifierTree)) {
+            return false;
+        }
+
+        Element element = trees.getElement(new TreePath(getCurrentPath(), expression));
+
+        return element instanceof VariableElement
+                && types.isSameType(types.erasure(element.asType()), types.erasure(params.asType()));
+    }
+}
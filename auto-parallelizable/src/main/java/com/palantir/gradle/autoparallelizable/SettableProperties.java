@@ -0,0 +1,72 @@
+/*
+ * (c) Copyright 2026 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.gradle.autoparallelizable;
+
+import com.google.auto.common.MoreTypes;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Types;
+
+/**
+ * Works out whether a type is one of the Gradle properties the generated code can set, remembering the answer for
+ * each type element so that shared supertypes are only walked once per round.
+ */
+final class SettableProperties {
+    private static final Set<String> SETTABLE_PROPERTY_CLASSES = Set.of(
+            "org.gradle.api.provider.Property",
+            "org.gradle.api.provider.HasMultipleValues",
+            "org.gradle.api.provider.MapProperty",
+            "org.gradle.api.file.ConfigurableFileCollection");
+
+    private final Types types;
+    private final Set<TypeElement> settablePropertyElements;
+    private final Map<TypeElement, Boolean> settableByElement = new HashMap<>();
+
+    SettableProperties(ProcessingEnvironment processingEnv) {
+        this.types = processingEnv.getTypeUtils();
+        this.settablePropertyElements = SETTABLE_PROPERTY_CLASSES.stream()
+                .map(className -> processingEnv.getElementUtils().getTypeElement(className))
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+    }
+
+    boolean isSettable(TypeMirror type) {
+        if (type.getKind() != TypeKind.DECLARED) {
+            return false;
+        }
+
+        TypeElement element = MoreTypes.asTypeElement(type);
+
+        // Not computeIfAbsent, as working out the answer recurses into this map
+        Boolean settable = settableByElement.get(element);
+
+        if (settable == null) {
+            settable = settablePropertyElements.contains(element)
+                    || types.directSupertypes(type).stream().anyMatch(this::isSettable);
+            settableByElement.put(element, settable);
+        }
+
+        return settable;
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * (c) Copyright 2026 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.gradle.autoparallelizable;
+
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.CodeBlock;
+
+/**
+ * A build service generated for a task, which the task registers and then, unless it is only used in the daemon, hands
+ * to each of its work items through a property of the same name on the work parameters.
+ */
+final class SharedService {
+    private final ClassName className;
+    private final String name;
+    private final CodeBlock configureSpec;
+    private final boolean passedToWorkItems;
+
+    SharedService(ClassName className, String name) {
+        this(className, name, CodeBlock.of("spec -> {}"));
+    }
+
+    SharedService(ClassName className, String name, CodeBlock configureSpec) {
+        this(className, name, configureSpec, true);
+    }
+
+    SharedService(ClassName className, String name, CodeBlock configureSpec, boolean passedToWorkItems) {
+        this.className = className;
+        this.name = name;
+        this.configureSpec = configureSpec;
+        this.passedToWorkItems = passedToWorkItems;
+    }
+
+    ClassName className() {
+        return className;
+    }
+
+    String name() {
+        return name;
+    }
+
+    /** The action passed to {@code registerIfAbsent}, which sets the parameters of the service. */
+    CodeBlock configureSpec() {
+        return configureSpec;
+    }
+
+    /** Services not passed to work items can be used with any isolation, as they never leave the daemon. */
+    boolean passedToWorkItems() {
+        return passedToWorkItems;
+    }
+
+    String getterName() {
+        return "get" + Character.toUpperCase(name.charAt(0)) + name.substring(1);
+    }
+}
@@ -147,7 +147,489 @@ class BadInputsTest {
         '''
     }
 
+    @Test
+    void 'only one property can be sharded'() {
+        assertErrorProducedByFile "At most one Params property can be annotated with @AutoParallelizable.Shard", /* language=java */ '''
+            @AutoParallelizable
+            public final class Test {
+                interface Params {
+                    @AutoParallelizable.Shard
+                    org.gradle.api.file.ConfigurableFileCollection getFirst();
+
+                    @AutoParallelizable.Shard
+                    org.gradle.api.file.ConfigurableFileCollection getSecond();
+                }
+
+                static void action(Params params) {}
+            }
+        '''
+    }
+
+    @Test
+    void 'sharded property must be a file collection or list property'() {
+        assertErrorProducedByFile "@AutoParallelizable.Shard can only be used on ConfigurableFileCollection or ListProperty properties", /* language=java */ '''
+            @AutoParallelizable
+            public final class Test {
+                interface Params {
+                    @AutoParallelizable.Shard
+                    org.gradle.api.provider.SetProperty<String> getStrings();
+                }
+
+                static void action(Params params) {}
+            }
+        '''
+    }
+
+    @Test
+    void 'sharded property must be on params itself'() {
+        assertErrorProducedByFile "@AutoParallelizable.Shard is only supported on top-level Params properties", /* language=java */ '''
+            @AutoParallelizable
+            public final class Test {
+                interface Params {
+                    @org.gradle.api.tasks.Nested
+                    Sources getSources();
+                }
+
+                interface Sources {
+                    @AutoParallelizable.Shard
+                    org.gradle.api.file.ConfigurableFileCollection getFiles();
+                }
+
+                static void action(Params params) {}
+            }
+        '''
+    }
+
+    @Test
+    void 'incremental property must be a file collection'() {
+        assertErrorProducedByFile "@Incremental can only be used on ConfigurableFileCollection properties", /* language=java */ '''
+            @AutoParallelizable
+            public final class Test {
+                interface Params {
+                    @org.gradle.work.Incremental
+                    org.gradle.api.file.DirectoryProperty getSources();
+                }
+
+                static void action(Params params) {}
+
+                static void removeOutputs(Params params, java.util.Set<java.io.File> removedSources) {}
+            }
+        '''
+    }
+
+    @Test
+    void 'incremental properties require a removeOutputs method'() {
+        assertErrorProducedByFile "There must be a 'static void removeOutputs(Params, Set<File>)' method", /* language=java */ '''
+            @AutoParallelizable
+            public final class Test {
+                interface Params {
+                    @org.gradle.work.Incremental
+                    org.gradle.api.file.ConfigurableFileCollection getSources();
+                }
+
+                static void action(Params params) {}
+            }
+        '''
+
+        assertErrorProducedByFile "The 'removeOutputs' method must be 'static void removeOutputs(Params, Set<File>)'", /* language=java */ '''
+            @AutoParallelizable
+            public final class Test {
+                interface Params {
+                    @org.gradle.work.Incremental
+                    org.gradle.api.file.ConfigurableFileCollection getSources();
+                }
+
+                static void action(Params params) {}
+
+                static void removeOutputs(Params params) {}
+            }
+        '''
+    }
+
+    @Test
+    void 'shard outputs require a merge method'() {
+        assertErrorProducedByFile "@AutoParallelizable.ShardOutput arguments can only be used with a 'merge' method", /* language=java */ '''
+            @AutoParallelizable
+            public final class Test {
+                interface Params {}
+
+                static void action(Params params, @AutoParallelizable.ShardOutput java.io.File shardOutput) {}
+            }
+        '''
+    }
+
+    @Test
+    void 'merge method requires a sharded property and a shard output'() {
+        assertErrorProducedByFile "The 'merge' method can only be used with an @AutoParallelizable.Shard property", /* language=java */ '''
+            @AutoParallelizable
+            public final class Test {
+                interface Params {}
+
+                static void action(Params params, @AutoParallelizable.ShardOutput java.io.File shardOutput) {}
+
+                static void merge(Params params, java.util.List<java.io.File> shardOutputs) {}
+            }
+        '''
+
+        assertErrorProducedByFile "The 'action' method must have an @AutoParallelizable.ShardOutput File argument to merge", /* language=java */ '''
+            @AutoParallelizable
+            public final class Test {
+                interface Params {
+                    @AutoParallelizable.Shard
+                    org.gradle.api.file.ConfigurableFileCollection getSources();
+                }
+
+                static void action(Params params) {}
+
+                static void merge(Params params, java.util.List<java.io.File> shardOutputs) {}
+            }
+        '''
+    }
+
+    @Test
+    void 'cost requires a sharded property'() {
+        assertErrorProducedByFile "The 'cost' method can only be used with an @AutoParallelizable.Shard property", /* language=java */ '''
+            @AutoParallelizable
+            public final class Test {
+                interface Params {}
+
+                static void action(Params params) {}
+
+                static long cost(java.io.File file) {
+                    return file.length();
+                }
+            }
+        '''
+    }
+
+    @Test
+    void 'cost must take a sharded item'() {
+        assertErrorProducedByFile "The 'cost' method must be 'static long cost(java.lang.String)'", /* language=java */ '''
+            @AutoParallelizable
+            public final class Test {
+                interface Params {
+                    @AutoParallelizable.Shard
+                    org.gradle.api.provider.ListProperty<String> getModules();
+                }
+
+                static void action(Params params) {}
+
+                static long cost(java.io.File file) {
+                    return file.length();
+                }
+            }
+        '''
+    }
+
+    @Test
+    void 'work item cache requires merge'() {
+        assertErrorProducedByFile "@AutoParallelizable.WorkItemCache can only be used with a 'merge' method", /* language=java */ '''
+            @AutoParallelizable
+            public final class Test {
+                interface Params {
+                    @AutoParallelizable.WorkItemCache
+                    org.gradle.api.file.DirectoryProperty getWorkItemCache();
+                }
+
+                static void action(Params params) {}
+            }
+        '''
+    }
+
+    @Test
+    void 'work item cache must be a directory property'() {
+        assertErrorProducedByFile "@AutoParallelizable.WorkItemCache can only be used on DirectoryProperty properties", /* language=java */ '''
+            @AutoParallelizable
+            public final class Test {
+                interface Params {
+                    @AutoParallelizable.Shard
+                    org.gradle.api.file.ConfigurableFileCollection getSources();
+
+                    @AutoParallelizable.WorkItemCache
+                    org.gradle.api.provider.Property<String> getWorkItemCache();
+                }
+
+                static void action(Params params, @AutoParallelizable.ShardOutput java.io.File shardOutput) {}
+
+                static void merge(Params params, java.util.List<java.io.File> shardOutputs) {}
+            }
+        '''
+    }
+
+    @Test
+    void 'deduplicate requires an output to copy'() {
+        assertErrorProducedByFile "deduplicate requires at least one @OutputFile or @OutputDirectory property to copy", /* language=java */ '''
+            @AutoParallelizable(deduplicate = true)
+            public final class Test {
+                interface Params {}
+
+                static void action(Params params) {}
+            }
+        '''
+    }
+
+    @Test
+    void 'deduplicate cannot be sharded'() {
+        assertErrorProducedByFile "deduplicate cannot be used with @AutoParallelizable.Shard or @Incremental properties", /* language=java */ '''
+            @AutoParallelizable(deduplicate = true)
+            public final class Test {
+                interface Params {
+                    @AutoParallelizable.Shard
+                    org.gradle.api.file.ConfigurableFileCollection getSources();
+
+                    @org.gradle.api.tasks.OutputDirectory
+                    org.gradle.api.file.DirectoryProperty getOutput();
+                }
+
+                static void action(Params params) {}
+            }
+        '''
+    }
+
+    @Test
+    void 'fork options require process isolation'() {
+        assertErrorProducedByFile "maxHeapSize and jvmArgs can only be used with Isolation.PROCESS", /* language=java */ '''
+            @AutoParallelizable(isolation = AutoParallelizable.Isolation.CLASSLOADER, maxHeapSize = "1g")
+            public final class Test {
+                interface Params {}
+
+                static void action(Params params) {}
+            }
+        '''
+    }
+
+    @Test
+    void 'worker classpath requires isolation'() {
+        assertErrorProducedByFile "@AutoParallelizable.WorkerClasspath can only be used with Isolation.CLASSLOADER or Isolation.PROCESS", /* language=java */ '''
+            @AutoParallelizable
+            public final class Test {
+                interface Params {
+                    @AutoParallelizable.WorkerClasspath
+                    org.gradle.api.file.ConfigurableFileCollection getClasspath();
+                }
+
+                static void action(Params params) {}
+            }
+        '''
+    }
+
+    @Test
+    void 'work limits must not be negative'() {
+        assertErrorProducedByFile "maxConcurrentWorkItems and workItemHeapMb must not be negative", /* language=java */ '''
+            @AutoParallelizable(maxConcurrentWorkItems = -1)
+            public final class Test {
+                interface Params {}
+
+                static void action(Params params) {}
+            }
+        '''
+    }
+
+    @Test
+    void 'work limits require no isolation'() {
+        assertErrorProducedByFile "maxConcurrentWorkItems and workItemHeapMb can only be used with Isolation.NONE", /* language=java */ '''
+            @AutoParallelizable(isolation = AutoParallelizable.Isolation.PROCESS, workItemHeapMb = 512)
+            public final class Test {
+                interface Params {}
+
+                static void action(Params params) {}
+            }
+        '''
+    }
+
+    @Test
+    void 'profiling requires no isolation'() {
+        assertErrorProducedByFile "profileSubmissions can only be used with Isolation.NONE", /* language=java */ '''
+            @AutoParallelizable(isolation = AutoParallelizable.Isolation.CLASSLOADER, profileSubmissions = true)
+            public final class Test {
+                interface Params {}
+
+                static void action(Params params) {}
+            }
+        '''
+    }
+
+    @Test
+    void 'tracing requires no isolation'() {
+        assertErrorProducedByFile "traceWorkItems can only be used with Isolation.NONE", /* language=java */ '''
+            @AutoParallelizable(isolation = AutoParallelizable.Isolation.PROCESS, traceWorkItems = true)
+            public final class Test {
+                interface Params {}
+
+                static void action(Params params) {}
+            }
+        '''
+    }
+
+    @Test
+    void 'batching requires no isolation'() {
+        assertErrorProducedByFile "maxBatchSize can only be used with Isolation.NONE", /* language=java */ '''
+            @AutoParallelizable(isolation = AutoParallelizable.Isolation.CLASSLOADER, maxBatchSize = 10)
+            public final class Test {
+                interface Params {}
+
+                static void action(Params params) {}
+            }
+        '''
+    }
+
+    @Test
+    void 'batch action must take a list of params'() {
+        assertErrorProducedByFile "The batch 'action' method must be 'static void action(List<Params>)'", /* language=java */ '''
+            @AutoParallelizable(maxBatchSize = 10)
+            public final class Test {
+                interface Params {}
+
+                static void action(Params params) {}
+
+                static void action(java.util.List<String> batch) {}
+            }
+        '''
+    }
+
+    @Test
+    void 'batch action requires max batch size'() {
+        assertErrorProducedByFile "The 'action(List<Params>)' method can only be used with maxBatchSize", /* language=java */ '''
+            @AutoParallelizable
+            public final class Test {
+                interface Params {}
+
+                static void action(Params params) {}
+
+                static void action(java.util.List<Params> batch) {}
+            }
+        '''
+    }
+
+    @Test
+    void 'skip must be a predicate on params'() {
+        assertErrorProducedByFile "The 'skip' method must be 'static boolean skip(Params)'", /* language=java */ '''
+            @AutoParallelizable
+            public final class Test {
+                interface Params {}
+
+                static void skip(Params params) {}
+
+                static void action(Params params) {}
+            }
+        '''
+    }
+
+    @Test
+    void 'running inline requires no isolation'() {
+        assertErrorProducedByFile "The 'runInline' method can only be used with Isolation.NONE", /* language=java */ '''
+            @AutoParallelizable(isolation = AutoParallelizable.Isolation.PROCESS)
+            public final class Test {
+                interface Params {}
+
+                static boolean runInline(Params params) {
+                    return true;
+                }
+
+                static void action(Params params) {}
+            }
+        '''
+    }
+
+    @Test
+    void 'cacheable file inputs require normalization'() {
+        assertErrorProducedByFile "File properties of cacheable tasks must be outputs or be annotated with @PathSensitive, @Classpath or @CompileClasspath", /* language=java */ '''
+            @AutoParallelizable(cacheable = true)
+            public final class Test {
+                interface Options {
+                    @org.gradle.api.tasks.InputFiles
+                    org.gradle.api.file.ConfigurableFileCollection getSources();
+                }
+
+                interface Params {
+                    @org.gradle.api.tasks.Nested
+                    Options getOptions();
+                }
+
+                static void action(Params params) {}
+            }
+        '''
+    }
+
+    @Test
+    void 'cacheable file inputs must not be sensitive to absolute paths'() {
+        assertErrorProducedByFile "File properties of cacheable tasks must not be @PathSensitive(PathSensitivity.ABSOLUTE), as other machines would not get cache hits", /* language=java */ '''
+            @AutoParallelizable(cacheable = true)
+            public final class Test {
+                interface Params {
+                    @org.gradle.api.tasks.InputFiles
+                    @org.gradle.api.tasks.PathSensitive(org.gradle.api.tasks.PathSensitivity.ABSOLUTE)
+                    org.gradle.api.file.ConfigurableFileCollection getSources();
+                }
+
+                static void action(Params params) {}
+            }
+        '''
+    }
+
+    @Test
+    void 'shared arguments must be named after a shared resource'() {
+        assertErrorProducedByFile "@AutoParallelizable.Shared arguments must be named after an @AutoParallelizable.SharedResource method", /* language=java */ '''
+            @AutoParallelizable
+            public final class Test {
+                interface Params {}
+
+                @AutoParallelizable.SharedResource
+                static StringBuilder builder(String key) {
+                    return new StringBuilder(key);
+                }
+
+                static void action(Params params, @AutoParallelizable.Shared java.util.function.Function<String, StringBuilder> other) {}
+            }
+        '''
+    }
+
+    @Test
+    void 'shared resources require no isolation'() {
+        assertErrorProducedByFile "@AutoParallelizable.SharedResource methods can only be used with Isolation.NONE", /* language=java */ '''
+            @AutoParallelizable(isolation = AutoParallelizable.Isolation.CLASSLOADER)
+            public final class Test {
+                interface Params {}
+
+                @AutoParallelizable.SharedResource
+                static StringBuilder builder(String key) {
+                    return new StringBuilder(key);
+                }
+
+                static void action(Params params, @AutoParallelizable.Shared java.util.function.Function<String, StringBuilder> builder) {}
+            }
+        '''
+    }
+
+    @Test
+    void 'memory-mapped files require no isolation'() {
+        assertErrorProducedByFile "Memory-mapped Function<File, ByteBuffer> arguments require Isolation.NONE", /* language=java */ '''
+            @AutoParallelizable(isolation = AutoParallelizable.Isolation.PROCESS)
+            public final class Test {
+                interface Params {}
+
+                static void action(Params params, @AutoParallelizable.Inject java.util.function.Function<java.io.File, java.nio.ByteBuffer> mappedFiles) {}
+            }
+        '''
+    }
+
+    @Test
+    void 'benchmarks require jmh'() {
+        assertErrorProducedByFile "The autoparallelizable.benchmarks option requires JMH on the compile classpath", ['-Aautoparallelizable.benchmarks=true'], /* language=java */ '''
+            @AutoParallelizable
+            public final class Test {
+                interface Params {}
+
+                static void action(Params params) {}
+            }
+        '''
+    }
+
     private static void assertErrorProducedByFile(String error, String file) {
+        assertErrorProducedByFile error, [], file
+    }
+
+    private static void assertErrorProducedByFile(String error, List<String> options, String file) {
         String modifiedFile = /*language=java */ """
             package app;
             
@@ -158,6 +640,7 @@ class BadInputsTest {
 
         Compilation compilation = Compiler.javac()
                 .withProcessors(new AutoParallelizableProcessor())
+                .withOptions(options)
                 .compile(noAction)
 
         assertThat(compilation).failed()
@@ -17,6 +17,7 @@
 package com.palantir.gradle.autoparallelizable;
 
 import static com.google.testing.compile.CompilationSubject.assertThat;
+import static org.assertj.core.api.Assertions.assertThat;
 
 import com.google.common.base.Splitter;
 import com.google.common.collect.Iterables;
@@ -29,6 +30,7 @@ import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -47,15 +49,7 @@ class CheckedInTests {
     @ParameterizedTest
     @MethodSource("allCheckedInTests")
     void checked_in_tests(Path testRoot) {
-        Path testInputs = testRoot.resolve("input");
-
-        JavaFileObject[] inputs = childrenOf(testInputs).stream()
-                .map(CheckedInTests::javaFileObjectFromFile)
-                .toArray(JavaFileObject[]::new);
-
-        Compilation compilation = Compiler.javac()
-                .withProcessors(new AutoParallelizableProcessor())
-                .compile(inputs);
+        Compilation compilation = compile(testRoot, optionsOf(testRoot));
 
         assertThat(compilation).succeededWithoutWarnings();
 
@@ -97,10 +91,51 @@ class CheckedInTests {
                 });
     }
 
+    @ParameterizedTest
+    @MethodSource("allCheckedInTests")
+    void unformatted_output_compiles(Path testRoot) {
+        List<String> options = new ArrayList<>(optionsOf(testRoot));
+        options.add("-A" + AutoParallelizableProcessor.FORMAT_OPTION + "=false");
+
+        Compilation compilation = compile(testRoot, options);
+
+        assertThat(compilation).succeededWithoutWarnings();
+
+        Set<String> expectedFiles = childrenOf(testRoot.resolve("output")).stream()
+                .map(output -> output.getFileName().toString())
+                .collect(Collectors.toSet());
+        Set<String> generatedFiles = compilation.generatedSourceFiles().stream()
+                .map(CheckedInTests::fileNameOf)
+                .collect(Collectors.toSet());
+
+        assertThat(generatedFiles).isEqualTo(expectedFiles);
+    }
+
+    private static Compilation compile(Path testRoot, List<String> options) {
+        JavaFileObject[] inputs = childrenOf(testRoot.resolve("input")).stream()
+                .map(CheckedInTests::javaFileObjectFromFile)
+                .toArray(JavaFileObject[]::new);
+
+        return Compiler.javac()
+                .withProcessors(new AutoParallelizableProcessor())
+                .withOptions(options)
+                .compile(inputs);
+    }
+
     private static List<Path> allCheckedInTests() {
         return childrenOf(Paths.get("src/test/resources"));
     }
 
+    private static List<String> optionsOf(Path testRoot) {
+        Path options = testRoot.resolve("options");
+
+        if (!Files.exists(options)) {
+            return List.of();
+        }
+
+        return Splitter.on('\n').omitEmptyStrings().trimResults().splitToList(readString(options));
+    }
+
     private static List<Path> childrenOf(Path directory) {
         try (Stream<Path> children = Files.list(directory)) {
             return children.collect(Collectors.toList());
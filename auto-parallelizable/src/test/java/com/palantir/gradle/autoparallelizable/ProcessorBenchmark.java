@@ -0,0 +1,161 @@
+/*
+ * (c) Copyright 2026 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.gradle.autoparallelizable;
+
+import static com.google.testing.compile.CompilationSubject.assertThat;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.google.testing.compile.Compilation;
+import com.google.testing.compile.Compiler;
+import com.google.testing.compile.JavaFileObjects;
+import com.sun.management.ThreadMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import javax.tools.JavaFileObject;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+// Run with: ./gradlew :auto-parallelizable:processorBenchmark
+@Tag("processor-benchmark")
+class ProcessorBenchmark {
+    private static final int CONTAINERS = Integer.getInteger("processorBenchmark.containers", 500);
+    private static final int WIDTH = Integer.getInteger("processorBenchmark.width", 20);
+    private static final int DEPTH = Integer.getInteger("processorBenchmark.depth", 4);
+    private static final int WARMUPS = Integer.getInteger("processorBenchmark.warmups", 2);
+
+    private static final List<String> PROPERTY_TYPES = List.of(
+            "Property<String>",
+            "ListProperty<String>",
+            "SetProperty<Integer>",
+            "MapProperty<String, String>",
+            "RegularFileProperty",
+            "DirectoryProperty",
+            "ConfigurableFileCollection");
+
+    @Test
+    void processor_time_and_allocation_per_element() {
+        List<JavaFileObject> containers = IntStream.range(0, CONTAINERS)
+                .mapToObj(ProcessorBenchmark::container)
+                .collect(Collectors.toList());
+
+        for (int i = 0; i < WARMUPS; i++) {
+            measure(containers, true);
+            measure(containers, false);
+        }
+
+        Measurement withProcessor = measure(containers, true);
+        Measurement withoutProcessor = measure(containers, false);
+
+        double millisPerElement = (withProcessor.nanos - withoutProcessor.nanos) / 1e6 / CONTAINERS;
+        double kilobytesPerElement = (withProcessor.bytes - withoutProcessor.bytes) / 1024.0 / CONTAINERS;
+
+        System.out.printf(
+                Locale.ROOT,
+                "%d containers, width %d, depth %d: %.3f ms and %.1f KiB per element, without formatting%n",
+                CONTAINERS,
+                WIDTH,
+                DEPTH,
+                millisPerElement,
+                kilobytesPerElement);
+
+        String maxMillisPerElement = System.getProperty("processorBenchmark.maxMillisPerElement");
+        if (maxMillisPerElement != null) {
+            assertThat(millisPerElement).isLessThanOrEqualTo(Double.parseDouble(maxMillisPerElement));
+        }
+
+        String maxKilobytesPerElement = System.getProperty("processorBenchmark.maxKilobytesPerElement");
+        if (maxKilobytesPerElement != null) {
+            assertThat(kilobytesPerElement).isLessThanOrEqualTo(Double.parseDouble(maxKilobytesPerElement));
+        }
+    }
+
+    private static Measurement measure(List<JavaFileObject> containers, boolean withProcessor) {
+        ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+        // Formatting runs on a pool of threads the allocation counter of this thread cannot see, and which are gone by
+        // the time the compilation returns, so measure the processor without it
+        Compiler compiler = withProcessor
+                ? Compiler.javac()
+                        .withProcessors(new AutoParallelizableProcessor())
+                        .withOptions("-A" + AutoParallelizableProcessor.FORMAT_OPTION + "=false")
+                : Compiler.javac().withOptions("-proc:none");
+
+        long startBytes = threads.getCurrentThreadAllocatedBytes();
+        long startNanos = System.nanoTime();
+        Compilation compilation = compiler.compile(containers);
+        long nanos = System.nanoTime() - startNanos;
+        long bytes = threads.getCurrentThreadAllocatedBytes() - startBytes;
+
+        assertThat(compilation).succeeded();
+
+        return new Measurement(nanos, bytes);
+    }
+
+    private static JavaFileObject container(int index) {
+        String name = "Container" + index;
+        StringBuilder source = new StringBuilder()
+                .append("package bench;\n\n")
+                .append("import com.palantir.gradle.autoparallelizable.AutoParallelizable;\n")
+                .append("import org.gradle.api.file.*;\n")
+                .append("import org.gradle.api.provider.*;\n")
+                .append("import org.gradle.api.tasks.Nested;\n\n")
+                .append("@AutoParallelizable\n")
+                .append("public final class ")
+                .append(name)
+                .append(" {\n");
+
+        appendInterface(source, "Params", DEPTH > 0 ? "Level0" : null);
+        for (int level = 0; level < DEPTH; level++) {
+            appendInterface(source, "Level" + level, level + 1 < DEPTH ? "Level" + (level + 1) : null);
+        }
+
+        source.append("    static void action(Params params) {}\n}\n");
+
+        return JavaFileObjects.forSourceString("bench." + name, source.toString());
+    }
+
+    private static void appendInterface(StringBuilder source, String name, String nested) {
+        source.append("    interface ").append(name).append(" {\n");
+
+        for (int property = 0; property < WIDTH; property++) {
+            source.append("        ")
+                    .append(PROPERTY_TYPES.get(property % PROPERTY_TYPES.size()))
+                    .append(" getProperty")
+                    .append(property)
+                    .append("();\n");
+        }
+
+        if (nested != null) {
+            source.append("        @Nested ").append(nested).append(" getNested();\n");
+        }
+
+        source.append("    }\n\n");
+    }
+
+    private static final class Measurement {
+        private final long nanos;
+        private final long bytes;
+
+        Measurement(long nanos, long bytes) {
+            this.nanos = nanos;
+            this.bytes = bytes;
+        }
+    }
+}
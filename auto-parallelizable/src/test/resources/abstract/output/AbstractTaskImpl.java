@@ -14,9 +14,11 @@ abstract class AbstractTaskImpl extends DefaultTask implements Abstract.Params {
     @TaskAction
     public final void execute() {
         getWorkerExecutor().noIsolation().submit(AbstractWorkAction.class, params -> {
-            params.getAbstractParams()
-                    .getSettableNonNestedString()
-                    .set(this.getAbstractParams().getSettableNonNestedString());
+            copyAbstractParams(params.getAbstractParams(), this.getAbstractParams());
         });
     }
+
+    private static void copyAbstractParams(Abstract.AbstractParams to, Abstract.AbstractParams from) {
+        to.getSettableNonNestedString().set(from.getSettableNonNestedString());
+    }
 }
@@ -0,0 +1,19 @@
+package app;
+
+import com.palantir.gradle.autoparallelizable.AutoParallelizable;
+import com.palantir.gradle.autoparallelizable.AutoParallelizable.Shard;
+import org.gradle.api.file.ConfigurableFileCollection;
+
+@AutoParallelizable
+public final class Adaptive {
+    public abstract class AdaptiveTask extends AdaptiveTaskImpl {}
+
+    interface Params {
+        @Shard(adaptive = true)
+        ConfigurableFileCollection getSources();
+    }
+
+    static void action(Params params) {
+        System.out.println(params.getSources().getFiles());
+    }
+}
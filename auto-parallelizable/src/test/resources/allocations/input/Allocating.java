@@ -0,0 +1,18 @@
+package app;
+
+import com.palantir.gradle.autoparallelizable.AutoParallelizable;
+import com.palantir.gradle.autoparallelizable.AutoParallelizable.Isolation;
+import org.gradle.api.provider.Property;
+
+@AutoParallelizable(isolation = Isolation.PROCESS, maxHeapSize = "1g", accountAllocations = true)
+public final class Allocating {
+    public abstract class AllocatingTask extends AllocatingTaskImpl {}
+
+    interface Params {
+        Property<String> getSomeString();
+    }
+
+    static void action(Params params) {
+        System.out.println("Hello " + params.getSomeString().get());
+    }
+}
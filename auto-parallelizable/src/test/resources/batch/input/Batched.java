@@ -0,0 +1,22 @@
+package app;
+
+import com.palantir.gradle.autoparallelizable.AutoParallelizable;
+import java.util.List;
+import org.gradle.api.provider.Property;
+
+@AutoParallelizable(maxBatchSize = 20)
+public final class Batched {
+    public abstract class BatchedTask extends BatchedTaskImpl {}
+
+    interface Params {
+        Property<String> getSomeString();
+    }
+
+    static void action(Params params) {
+        action(List.of(params));
+    }
+
+    static void action(List<Params> batch) {
+        batch.forEach(params -> System.out.println("Hello " + params.getSomeString().get()));
+    }
+}
@@ -0,0 +1,19 @@
+package app;
+
+import com.palantir.gradle.autoparallelizable.AutoParallelizable;
+import com.palantir.gradle.autoparallelizable.AutoParallelizable.Inject;
+import org.gradle.api.file.FileSystemOperations;
+import org.gradle.api.provider.Property;
+
+@AutoParallelizable
+public final class Compress {
+    public abstract class CompressTask extends CompressTaskImpl {}
+
+    interface Params {
+        Property<String> getAlgorithm();
+    }
+
+    static void action(Params params, @Inject FileSystemOperations _fileSystemOperations) {
+        System.out.println("Compressing with " + params.getAlgorithm().get());
+    }
+}
@@ -0,0 +1,8 @@
+package org.openjdk.jmh.annotations;
+
+/** Stand-in for the JMH enum of the same name. */
+public enum Level {
+    Trial,
+    Iteration,
+    Invocation
+}
@@ -0,0 +1,13 @@
+package org.openjdk.jmh.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/** Stand-in for the JMH annotation of the same name. */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Setup {
+    Level value() default Level.Trial;
+}
@@ -0,0 +1,38 @@
+package app;
+
+import com.palantir.gradle.autoparallelizable.AutoParallelizable;
+import com.palantir.gradle.autoparallelizable.AutoParallelizable.Shard;
+import com.palantir.gradle.autoparallelizable.AutoParallelizable.ShardOutput;
+import com.palantir.gradle.autoparallelizable.AutoParallelizable.WorkItemCache;
+import java.io.File;
+import java.util.List;
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.tasks.OutputFile;
+
+@AutoParallelizable
+public final class Cached {
+    public abstract class CachedTask extends CachedTaskImpl {}
+
+    interface Params {
+        @Shard
+        ConfigurableFileCollection getSources();
+
+        @OutputFile
+        RegularFileProperty getIndex();
+
+        DirectoryProperty getTemplates();
+
+        @WorkItemCache
+        DirectoryProperty getWorkItemCache();
+    }
+
+    static void action(Params params, @ShardOutput File shardOutput) {
+        System.out.println(params.getSources().getFiles() + " -> " + shardOutput);
+    }
+
+    static void merge(Params params, List<File> shardOutputs) {
+        System.out.println(shardOutputs + " -> " + params.getIndex().get());
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * (c) Copyright 2026 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package app;
+
+import com.palantir.gradle.autoparallelizable.AutoParallelizable;
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.InputFiles;
+import org.gradle.api.tasks.Nested;
+import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
+
+@AutoParallelizable(cacheable = true)
+public final class Reproducible {
+    public abstract class ReproducibleTask extends ReproducibleTaskImpl {}
+
+    interface Options {
+        @Input
+        Property<String> getLabel();
+    }
+
+    interface Params {
+        @Input
+        Property<String> getGreeting();
+
+        @InputFiles
+        @PathSensitive(PathSensitivity.RELATIVE)
+        ConfigurableFileCollection getSources();
+
+        @OutputFile
+        RegularFileProperty getOutput();
+
+        @Nested
+        Options getOptions();
+    }
+
+    static void action(Params params) {
+        System.out.println(params.getGreeting().get() + " " + params.getOptions().getLabel().get());
+        params.getSources().forEach(System.out::println);
+        System.out.println(params.getOutput().get());
+    }
+}
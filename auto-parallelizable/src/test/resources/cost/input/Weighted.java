@@ -0,0 +1,23 @@
+package app;
+
+import com.palantir.gradle.autoparallelizable.AutoParallelizable;
+import com.palantir.gradle.autoparallelizable.AutoParallelizable.Shard;
+import org.gradle.api.provider.ListProperty;
+
+@AutoParallelizable
+public final class Weighted {
+    public abstract class WeightedTask extends WeightedTaskImpl {}
+
+    interface Params {
+        @Shard
+        ListProperty<String> getModules();
+    }
+
+    static void action(Params params) {
+        System.out.println(params.getModules().get());
+    }
+
+    static long cost(String module) {
+        return module.length();
+    }
+}
@@ -0,0 +1,30 @@
+package app;
+
+import com.palantir.gradle.autoparallelizable.AutoParallelizable;
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.OutputDirectory;
+import org.gradle.api.tasks.OutputFile;
+
+@AutoParallelizable(deduplicate = true)
+public final class Deduplicated {
+    public abstract class DeduplicatedTask extends DeduplicatedTaskImpl {}
+
+    interface Params {
+        ConfigurableFileCollection getSchemas();
+
+        Property<String> getLanguage();
+
+        @OutputDirectory
+        DirectoryProperty getOutput();
+
+        @OutputFile
+        RegularFileProperty getReport();
+    }
+
+    static void action(Params params) {
+        System.out.println(params.getSchemas().getFiles() + " -> " + params.getOutput().get());
+    }
+}
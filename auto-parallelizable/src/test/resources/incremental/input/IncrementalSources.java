@@ -0,0 +1,28 @@
+package app;
+
+import com.palantir.gradle.autoparallelizable.AutoParallelizable;
+import java.io.File;
+import java.util.Set;
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.provider.Property;
+import org.gradle.work.Incremental;
+
+@AutoParallelizable
+public final class IncrementalSources {
+    public abstract class IncrementalSourcesTask extends IncrementalSourcesTaskImpl {}
+
+    interface Params {
+        Property<String> getSomeString();
+
+        @Incremental
+        ConfigurableFileCollection getSources();
+    }
+
+    static void action(Params params) {
+        System.out.println(params.getSomeString().get() + " " + params.getSources().getFiles());
+    }
+
+    static void removeOutputs(Params _params, Set<File> removedSources) {
+        removedSources.forEach(File::delete);
+    }
+}
@@ -0,0 +1,25 @@
+package app;
+
+import com.palantir.gradle.autoparallelizable.AutoParallelizable;
+import org.gradle.api.file.ConfigurableFileCollection;
+
+@AutoParallelizable
+public final class Inlined {
+    public abstract class InlinedTask extends InlinedTaskImpl {}
+
+    interface Params {
+        ConfigurableFileCollection getSources();
+    }
+
+    static boolean skip(Params params) {
+        return params.getSources().isEmpty();
+    }
+
+    static boolean runInline(Params params) {
+        return params.getSources().getFiles().size() < 3;
+    }
+
+    static void action(Params params) {
+        params.getSources().forEach(System.out::println);
+    }
+}
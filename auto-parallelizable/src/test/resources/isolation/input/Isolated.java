@@ -0,0 +1,23 @@
+package app;
+
+import com.palantir.gradle.autoparallelizable.AutoParallelizable;
+import com.palantir.gradle.autoparallelizable.AutoParallelizable.Isolation;
+import com.palantir.gradle.autoparallelizable.AutoParallelizable.WorkerClasspath;
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.provider.Property;
+
+@AutoParallelizable(isolation = Isolation.PROCESS, maxHeapSize = "2g", jvmArgs = {"-XX:+UseParallelGC", "-Dfoo=bar"})
+public final class Isolated {
+    public abstract class IsolatedTask extends IsolatedTaskImpl {}
+
+    interface Params {
+        Property<String> getSomeString();
+
+        @WorkerClasspath
+        ConfigurableFileCollection getToolClasspath();
+    }
+
+    static void action(Params params) {
+        System.out.println("Hello " + params.getSomeString().get());
+    }
+}
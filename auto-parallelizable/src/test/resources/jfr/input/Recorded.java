@@ -0,0 +1,27 @@
+package app;
+
+import com.palantir.gradle.autoparallelizable.AutoParallelizable;
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.OutputFile;
+
+@AutoParallelizable(emitJfrEvents = true)
+public final class Recorded {
+    public abstract class RecordedTask extends RecordedTaskImpl {}
+
+    interface Params {
+        Property<String> getGreeting();
+
+        RegularFileProperty getConfig();
+
+        ConfigurableFileCollection getSources();
+
+        @OutputFile
+        RegularFileProperty getReport();
+    }
+
+    static void action(Params params) {
+        System.out.println("Hello " + params.getGreeting().get());
+    }
+}
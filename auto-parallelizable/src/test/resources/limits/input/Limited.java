@@ -0,0 +1,17 @@
+package app;
+
+import com.palantir.gradle.autoparallelizable.AutoParallelizable;
+import org.gradle.api.provider.Property;
+
+@AutoParallelizable(maxConcurrentWorkItems = 2, workItemHeapMb = 512)
+public final class Limited {
+    public abstract class LimitedTask extends LimitedTaskImpl {}
+
+    interface Params {
+        Property<String> getSomeString();
+    }
+
+    static void action(Params params) {
+        System.out.println("Hello " + params.getSomeString().get());
+    }
+}
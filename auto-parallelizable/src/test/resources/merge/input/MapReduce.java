@@ -0,0 +1,29 @@
+package app;
+
+import com.palantir.gradle.autoparallelizable.AutoParallelizable;
+import com.palantir.gradle.autoparallelizable.AutoParallelizable.Shard;
+import com.palantir.gradle.autoparallelizable.AutoParallelizable.ShardOutput;
+import java.io.File;
+import java.util.List;
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.file.RegularFileProperty;
+
+@AutoParallelizable
+public final class MapReduce {
+    public abstract class MapReduceTask extends MapReduceTaskImpl {}
+
+    interface Params {
+        @Shard
+        ConfigurableFileCollection getSources();
+
+        RegularFileProperty getIndex();
+    }
+
+    static void action(Params params, @ShardOutput File shardOutput) {
+        System.out.println(params.getSources().getFiles() + " -> " + shardOutput);
+    }
+
+    static void merge(Params params, List<File> shardOutputs) {
+        System.out.println(shardOutputs + " -> " + params.getIndex().get());
+    }
+}
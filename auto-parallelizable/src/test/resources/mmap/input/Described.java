@@ -0,0 +1,39 @@
+/*
+ * (c) Copyright 2026 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package app;
+
+import com.palantir.gradle.autoparallelizable.AutoParallelizable;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.function.Function;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.tasks.InputFile;
+
+@AutoParallelizable
+public final class Described {
+    public abstract class DescribedTask extends DescribedTaskImpl {}
+
+    interface Params {
+        @InputFile
+        RegularFileProperty getDescriptorSet();
+    }
+
+    static void action(Params params, @AutoParallelizable.Inject Function<File, ByteBuffer> mappedFiles) {
+        ByteBuffer descriptorSet = mappedFiles.apply(params.getDescriptorSet().get().getAsFile());
+        System.out.println(descriptorSet.remaining());
+    }
+}
@@ -15,40 +15,28 @@ abstract class NestedTaskImpl extends DefaultTask implements Nested.Params {
     public final void execute() {
         getWorkerExecutor().noIsolation().submit(NestedWorkAction.class, params -> {
             params.getSomeString().set(this.getSomeString());
-            params.getNestedInterface()
-                    .getString()
-                    .set(this.getNestedInterface().getString());
-            params.getDoublyNestedInterface()
-                    .getDoubleString()
-                    .set(this.getDoublyNestedInterface().getDoubleString());
-            params.getDoublyNestedInterface()
-                    .getNestedInterface()
-                    .getString()
-                    .set(this.getDoublyNestedInterface().getNestedInterface().getString());
-            params.getTripleNestedInterface()
-                    .getTripleString()
-                    .set(this.getTripleNestedInterface().getTripleString());
-            params.getTripleNestedInterface()
-                    .getTripleInteger()
-                    .set(this.getTripleNestedInterface().getTripleInteger());
-            params.getTripleNestedInterface()
-                    .getDoublyNestedInterface()
-                    .getDoubleString()
-                    .set(this.getTripleNestedInterface()
-                            .getDoublyNestedInterface()
-                            .getDoubleString());
-            params.getTripleNestedInterface()
-                    .getDoublyNestedInterface()
-                    .getNestedInterface()
-                    .getString()
-                    .set(this.getTripleNestedInterface()
-                            .getDoublyNestedInterface()
-                            .getNestedInterface()
-                            .getString());
+            copyNestedInterface(params.getNestedInterface(), this.getNestedInterface());
+            copyDoublyNested(params.getDoublyNestedInterface(), this.getDoublyNestedInterface());
+            copyTripleNested(params.getTripleNestedInterface(), this.getTripleNestedInterface());
             params.getSetPropertyNested().set(this.getSetPropertyNested());
             params.getListPropertyNested().set(this.getListPropertyNested());
             params.getPropertyNested().set(this.getPropertyNested());
             params.getMapPropertyNested().set(this.getMapPropertyNested());
         });
     }
+
+    private static void copyNestedInterface(Nested.NestedInterface to, Nested.NestedInterface from) {
+        to.getString().set(from.getString());
+    }
+
+    private static void copyDoublyNested(Nested.DoublyNested to, Nested.DoublyNested from) {
+        to.getDoubleString().set(from.getDoubleString());
+        copyNestedInterface(to.getNestedInterface(), from.getNestedInterface());
+    }
+
+    private static void copyTripleNested(Nested.TripleNested to, Nested.TripleNested from) {
+        to.getTripleString().set(from.getTripleString());
+        to.getTripleInteger().set(from.getTripleInteger());
+        copyDoublyNested(to.getDoublyNestedInterface(), from.getDoublyNestedInterface());
+    }
 }
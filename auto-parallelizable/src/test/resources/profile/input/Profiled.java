@@ -0,0 +1,17 @@
+package app;
+
+import com.palantir.gradle.autoparallelizable.AutoParallelizable;
+import org.gradle.api.provider.Property;
+
+@AutoParallelizable(profileSubmissions = true)
+public final class Profiled {
+    public abstract class ProfiledTask extends ProfiledTaskImpl {}
+
+    interface Params {
+        Property<String> getSomeString();
+    }
+
+    static void action(Params params) {
+        System.out.println("Hello " + params.getSomeString().get());
+    }
+}
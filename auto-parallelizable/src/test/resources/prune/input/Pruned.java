@@ -0,0 +1,34 @@
+package app;
+
+import com.palantir.gradle.autoparallelizable.AutoParallelizable;
+import java.io.File;
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.provider.MapProperty;
+import org.gradle.api.provider.Property;
+
+@AutoParallelizable(pruneUnreadProperties = true)
+public final class Pruned {
+    public abstract class PrunedTask extends PrunedTaskImpl {}
+
+    interface Params {
+        Property<String> getGreeting();
+
+        ConfigurableFileCollection getSources();
+
+        MapProperty<String, String> getConfiguration();
+
+        default String greeting() {
+            return getGreeting().get();
+        }
+    }
+
+    static void action(Params params) {
+        for (File source : params.getSources()) {
+            print(params, source);
+        }
+    }
+
+    private static void print(Params params, File source) {
+        System.out.println(params.greeting() + " " + source.getName());
+    }
+}
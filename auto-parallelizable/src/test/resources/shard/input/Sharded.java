@@ -0,0 +1,22 @@
+package app;
+
+import com.palantir.gradle.autoparallelizable.AutoParallelizable;
+import com.palantir.gradle.autoparallelizable.AutoParallelizable.Shard;
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.provider.Property;
+
+@AutoParallelizable
+public final class Sharded {
+    public abstract class ShardedTask extends ShardedTaskImpl {}
+
+    interface Params {
+        Property<String> getSomeString();
+
+        @Shard
+        ConfigurableFileCollection getSources();
+    }
+
+    static void action(Params params) {
+        System.out.println(params.getSomeString().get() + " " + params.getSources().getFiles());
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * (c) Copyright 2026 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package app;
+
+import com.palantir.gradle.autoparallelizable.AutoParallelizable;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.Input;
+
+@AutoParallelizable
+public final class Matching {
+    public abstract class MatchingTask extends MatchingTaskImpl {}
+
+    interface Params {
+        @Input
+        Property<String> getRegex();
+
+        @Input
+        Property<String> getText();
+    }
+
+    @AutoParallelizable.SharedResource(maxSize = 4)
+    static Pattern pattern(String regex) {
+        return Pattern.compile(regex);
+    }
+
+    static void action(Params params, @AutoParallelizable.Shared Function<String, Pattern> pattern) {
+        System.out.println(pattern.apply(params.getRegex().get()).matcher(params.getText().get()).matches());
+    }
+}
@@ -0,0 +1,17 @@
+package app;
+
+import com.palantir.gradle.autoparallelizable.AutoParallelizable;
+import org.gradle.api.provider.Property;
+
+@AutoParallelizable(traceWorkItems = true)
+public final class Traced {
+    public abstract class TracedTask extends TracedTaskImpl {}
+
+    interface Params {
+        Property<String> getSomeString();
+    }
+
+    static void action(Params params) {
+        System.out.println("Hello " + params.getSomeString().get());
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * (c) Copyright 2026 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package integtest;
+
+import com.palantir.gradle.autoparallelizable.AutoParallelizable;
+import com.palantir.gradle.autoparallelizable.AutoParallelizable.Shard;
+import org.gradle.api.provider.ListProperty;
+import org.gradle.api.tasks.Input;
+
+@AutoParallelizable
+public final class DoItAdaptive {
+    public abstract static class DoItAdaptiveTask extends DoItAdaptiveTaskImpl {}
+
+    interface Params {
+        @Input
+        @Shard(adaptive = true)
+        ListProperty<String> getItems();
+    }
+
+    @SuppressWarnings("checkstyle:RegexpSinglelineJava")
+    static void action(Params params) {
+        System.out.println("shard: " + String.join(", ", params.getItems().get()));
+        // Every item costs the same, so only the recorded durations can tell that this one is slow
+        if (params.getItems().get().contains("slow")) {
+            try {
+                Thread.sleep(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    private DoItAdaptive() {}
+}
@@ -0,0 +1,44 @@
+/*
+ * (c) Copyright 2026 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package integtest;
+
+import com.palantir.gradle.autoparallelizable.AutoParallelizable;
+import java.util.List;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.Input;
+
+@AutoParallelizable(maxBatchSize = 3, maxBatchWaitMillis = 10_000)
+public final class DoItBatched {
+    public abstract static class DoItBatchedTask extends DoItBatchedTaskImpl {}
+
+    interface Params {
+        @Input
+        Property<String> getStringValue();
+    }
+
+    static void action(Params params) {
+        action(List.of(params));
+    }
+
+    @SuppressWarnings("checkstyle:RegexpSinglelineJava")
+    static void action(List<Params> batch) {
+        System.out.println("batch of " + batch.size());
+        batch.forEach(params -> System.out.println("string: " + params.getStringValue().get()));
+    }
+
+    private DoItBatched() {}
+}
@@ -0,0 +1,59 @@
+/*
+ * (c) Copyright 2026 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package integtest;
+
+import com.palantir.gradle.autoparallelizable.AutoParallelizable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.InputFile;
+import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
+
+@AutoParallelizable(cacheable = true)
+public final class DoItCacheable {
+    public abstract static class DoItCacheableTask extends DoItCacheableTaskImpl {}
+
+    interface Params {
+        @Input
+        Property<String> getPrefix();
+
+        @InputFile
+        @PathSensitive(PathSensitivity.RELATIVE)
+        RegularFileProperty getInput();
+
+        @OutputFile
+        RegularFileProperty getOutput();
+    }
+
+    @SuppressWarnings("checkstyle:RegexpSinglelineJava")
+    static void action(Params params) {
+        System.out.println("prefixing: " + params.getInput().get().getAsFile().getName());
+        try {
+            String input = Files.readString(params.getInput().get().getAsFile().toPath());
+            Files.writeString(params.getOutput().get().getAsFile().toPath(), params.getPrefix().get() + input);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private DoItCacheable() {}
+}
@@ -0,0 +1,73 @@
+/*
+ * (c) Copyright 2026 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package integtest;
+
+import com.palantir.gradle.autoparallelizable.AutoParallelizable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Set;
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.tasks.InputFiles;
+import org.gradle.api.tasks.OutputDirectory;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
+import org.gradle.work.Incremental;
+
+@AutoParallelizable
+public final class DoItIncremental {
+    public abstract static class DoItIncrementalTask extends DoItIncrementalTaskImpl {}
+
+    interface Params {
+        @InputFiles
+        @Incremental
+        @PathSensitive(PathSensitivity.NAME_ONLY)
+        ConfigurableFileCollection getSources();
+
+        @OutputDirectory
+        DirectoryProperty getOutput();
+    }
+
+    @SuppressWarnings("checkstyle:RegexpSinglelineJava")
+    static void action(Params params) {
+        for (File source : params.getSources().getFiles()) {
+            System.out.println("processed: " + source.getName());
+            try {
+                Files.copy(source.toPath(), outputOf(params, source).toPath(), StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    @SuppressWarnings("checkstyle:RegexpSinglelineJava")
+    static void removeOutputs(Params params, Set<File> removedSources) {
+        for (File source : removedSources) {
+            System.out.println("removed: " + source.getName());
+            outputOf(params, source).delete();
+        }
+    }
+
+    private static File outputOf(Params params, File source) {
+        return params.getOutput().file(source.getName()).get().getAsFile();
+    }
+
+    private DoItIncremental() {}
+}
@@ -0,0 +1,41 @@
+/*
+ * (c) Copyright 2026 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package integtest;
+
+import com.palantir.gradle.autoparallelizable.AutoParallelizable;
+import com.palantir.gradle.autoparallelizable.AutoParallelizable.Isolation;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.Input;
+
+@AutoParallelizable(isolation = Isolation.PROCESS, maxHeapSize = "64m", jvmArgs = "-Dintegtest.forked=yes")
+public final class DoItIsolated {
+    public abstract static class DoItIsolatedTask extends DoItIsolatedTaskImpl {}
+
+    interface Params {
+        @Input
+        Property<String> getStringValue();
+    }
+
+    @SuppressWarnings("checkstyle:RegexpSinglelineJava")
+    static void action(Params params) {
+        System.out.println("string: " + params.getStringValue().get());
+        System.out.println("forked: " + System.getProperty("integtest.forked"));
+        System.out.println("small heap: " + (Runtime.getRuntime().maxMemory() <= 64L * 1024 * 1024));
+    }
+
+    private DoItIsolated() {}
+}
@@ -0,0 +1,76 @@
+/*
+ * (c) Copyright 2026 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package integtest;
+
+import com.palantir.gradle.autoparallelizable.AutoParallelizable;
+import com.palantir.gradle.autoparallelizable.AutoParallelizable.Shard;
+import com.palantir.gradle.autoparallelizable.AutoParallelizable.ShardOutput;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.ListProperty;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.OutputFile;
+
+@AutoParallelizable
+public final class DoItMapReduce {
+    public abstract static class DoItMapReduceTask extends DoItMapReduceTaskImpl {}
+
+    interface Params {
+        @Input
+        @Shard
+        ListProperty<String> getItems();
+
+        @OutputFile
+        RegularFileProperty getOutput();
+    }
+
+    static void action(Params params, @ShardOutput File shardOutput) {
+        try {
+            Files.writeString(new File(shardOutput, "part.txt").toPath(), String.join(", ", params.getItems().get()));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @SuppressWarnings("checkstyle:RegexpSinglelineJava")
+    static void merge(Params params, List<File> shardOutputs) {
+        String merged = shardOutputs.stream()
+                .map(shardOutput -> readString(new File(shardOutput, "part.txt")))
+                .collect(Collectors.joining(", "));
+        System.out.println("merged: " + merged);
+        try {
+            Files.writeString(params.getOutput().get().getAsFile().toPath(), merged);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String readString(File file) {
+        try {
+            return Files.readString(file.toPath());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private DoItMapReduce() {}
+}
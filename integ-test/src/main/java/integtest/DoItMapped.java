@@ -0,0 +1,43 @@
+/*
+ * (c) Copyright 2026 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package integtest;
+
+import com.palantir.gradle.autoparallelizable.AutoParallelizable;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Function;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.tasks.InputFile;
+
+@AutoParallelizable
+public final class DoItMapped {
+    public abstract static class DoItMappedTask extends DoItMappedTaskImpl {}
+
+    interface Params {
+        @InputFile
+        RegularFileProperty getInput();
+    }
+
+    @SuppressWarnings("checkstyle:RegexpSinglelineJava")
+    static void action(Params params, @AutoParallelizable.Inject Function<File, ByteBuffer> mappedFiles) {
+        ByteBuffer input = mappedFiles.apply(params.getInput().get().getAsFile());
+        System.out.println("mapped: " + StandardCharsets.UTF_8.decode(input));
+    }
+
+    private DoItMapped() {}
+}
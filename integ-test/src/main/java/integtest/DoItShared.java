@@ -0,0 +1,47 @@
+/*
+ * (c) Copyright 2026 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package integtest;
+
+import com.palantir.gradle.autoparallelizable.AutoParallelizable;
+import java.util.Locale;
+import java.util.function.Function;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.Input;
+
+@AutoParallelizable
+public final class DoItShared {
+    public abstract static class DoItSharedTask extends DoItSharedTaskImpl {}
+
+    interface Params {
+        @Input
+        Property<String> getSchema();
+    }
+
+    @SuppressWarnings("checkstyle:RegexpSinglelineJava")
+    @AutoParallelizable.SharedResource(maxSize = 2)
+    static String schema(String name) {
+        System.out.println("building: " + name);
+        return name.toUpperCase(Locale.ROOT);
+    }
+
+    @SuppressWarnings("checkstyle:RegexpSinglelineJava")
+    static void action(Params params, @AutoParallelizable.Shared Function<String, String> schema) {
+        System.out.println("using: " + schema.apply(params.getSchema().get()));
+    }
+
+    private DoItShared() {}
+}
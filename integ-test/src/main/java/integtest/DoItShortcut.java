@@ -0,0 +1,46 @@
+/*
+ * (c) Copyright 2026 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package integtest;
+
+import com.palantir.gradle.autoparallelizable.AutoParallelizable;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.Input;
+
+@AutoParallelizable
+public final class DoItShortcut {
+    public abstract static class DoItShortcutTask extends DoItShortcutTaskImpl {}
+
+    interface Params {
+        @Input
+        Property<String> getStringValue();
+    }
+
+    static boolean skip(Params params) {
+        return params.getStringValue().get().isEmpty();
+    }
+
+    static boolean runInline(Params params) {
+        return params.getStringValue().get().length() < 10;
+    }
+
+    @SuppressWarnings("checkstyle:RegexpSinglelineJava")
+    static void action(Params params) {
+        System.out.println("string: [" + params.getStringValue().get() + "]");
+    }
+
+    private DoItShortcut() {}
+}
@@ -16,6 +16,7 @@
 
 package com.palantir.gradle.autoparallelizable
 
+import jdk.jfr.consumer.RecordingFile
 import nebula.test.IntegrationSpec
 
 
@@ -120,6 +121,440 @@ class AutoParallelizableIntegSpec extends IntegrationSpec {
         stdout.contains 'from set: set'
     }
 
+    def 'process isolation forks a worker with the configured options'() {
+        // language=gradle
+        buildFile << '''
+            import integtest.DoItIsolated.DoItIsolatedTask
+            
+            task doIt(type: DoItIsolatedTask) {
+                stringValue = 'heh'
+            }
+        '''.stripIndent(true)
+
+        when:
+        def stdout = runTasksSuccessfully('doIt').standardOutput
+
+        then:
+        stdout.contains 'string: heh'
+        stdout.contains 'forked: yes'
+        stdout.contains 'small heap: true'
+    }
+
+    def '@Shard properties are split across one work item per worker'() {
+        // language=gradle
+        buildFile << '''
+            import integtest.DoItSharded.DoItShardedTask
+            
+            task doIt(type: DoItShardedTask) {
+                items = ['a', 'b', 'c', 'd']
+            }
+        '''.stripIndent(true)
+
+        when:
+        def stdout = runTasksSuccessfully('doIt', '--max-workers=2').standardOutput
+
+        then:
+        stdout.contains 'shard: a, b'
+        stdout.contains 'shard: c, d'
+    }
+
+    def 'adaptive shards are repacked after a run with skewed durations'() {
+        // language=gradle
+        buildFile << '''
+            import integtest.DoItAdaptive.DoItAdaptiveTask
+            
+            task doIt(type: DoItAdaptiveTask) {
+                items = ['slow', 'b', 'c', 'd']
+            }
+        '''.stripIndent(true)
+
+        when:
+        def firstStdout = runTasksSuccessfully('doIt', '--max-workers=2').standardOutput
+        def secondStdout = runTasksSuccessfully('doIt', '--max-workers=2', '--rerun-tasks').standardOutput
+
+        then:
+        firstStdout.contains 'shard: slow, c'
+        firstStdout.contains 'shard: b, d'
+
+        def corrections = new Properties()
+        file('build/tmp/doIt/durations/corrections.properties').withInputStream { corrections.load(it) }
+        corrections.stringPropertyNames() == ['slow', 'b', 'c', 'd'] as Set
+        corrections.getProperty('slow') as double > corrections.getProperty('b') as double
+
+        secondStdout.contains 'shard: slow, b'
+        secondStdout.contains 'shard: c, d'
+    }
+
+    def 'merge runs over the outputs of every shard'() {
+        // language=gradle
+        buildFile << '''
+            import integtest.DoItMapReduce.DoItMapReduceTask
+            
+            task doIt(type: DoItMapReduceTask) {
+                items = ['a', 'b', 'c', 'd']
+                output = file('merged.txt')
+            }
+        '''.stripIndent(true)
+
+        when:
+        def stdout = runTasksSuccessfully('doIt', '--max-workers=2').standardOutput
+
+        then:
+        stdout.contains 'merged: a, b, c, d'
+        file('merged.txt').text == 'a, b, c, d'
+    }
+
+    def 'work items reuse cached shard outputs'() {
+        // language=gradle
+        buildFile << '''
+            import integtest.DoItCached.DoItCachedTask
+            
+            task doIt(type: DoItCachedTask) {
+                items = ['a', 'b', 'c', 'd']
+                output = file('merged.txt')
+                workItemCache = file('work-item-cache')
+            }
+        '''.stripIndent(true)
+
+        when:
+        def firstStdout = runTasksSuccessfully('doIt', '--max-workers=2').standardOutput
+        def secondStdout = runTasksSuccessfully('doIt', '--max-workers=2', '--rerun-tasks').standardOutput
+
+        then:
+        firstStdout.contains 'mapped: a, b'
+        firstStdout.contains 'mapped: c, d'
+
+        !secondStdout.contains('mapped:')
+        secondStdout.contains 'merged: a, b, c, d'
+    }
+
+    def 'work items rerun when the contents of a directory input change'() {
+        file('templates/header.txt') << 'first'
+
+        // language=gradle
+        buildFile << '''
+            import integtest.DoItCached.DoItCachedTask
+            
+            task doIt(type: DoItCachedTask) {
+                items = ['a', 'b']
+                templates = file('templates')
+                output = file('merged.txt')
+                workItemCache = file('work-item-cache')
+            }
+        '''.stripIndent(true)
+
+        when:
+        runTasksSuccessfully('doIt', '--max-workers=1')
+        file('templates/header.txt').text = 'second'
+        def secondStdout = runTasksSuccessfully('doIt', '--max-workers=1').standardOutput
+
+        then:
+        secondStdout.contains 'mapped: a, b'
+    }
+
+    def 'identical work items run once per build'() {
+        // language=gradle
+        buildFile << '''
+            import integtest.DoItDeduplicated.DoItDeduplicatedTask
+            
+            task first(type: DoItDeduplicatedTask) {
+                schema = 'shared'
+                output = file('first.txt')
+            }
+            
+            task second(type: DoItDeduplicatedTask) {
+                schema = 'shared'
+                output = file('second.txt')
+            }
+        '''.stripIndent(true)
+
+        when:
+        def stdout = runTasksSuccessfully('first', 'second').standardOutput
+
+        then:
+        stdout.count('generating: shared') == 1
+        file('first.txt').text == 'shared'
+        file('second.txt').text == 'shared'
+    }
+
+    def 'profiled work items log a summary at the end of the build'() {
+        // language=gradle
+        buildFile << '''
+            import integtest.DoItProfiled.DoItProfiledTask
+            
+            task first(type: DoItProfiledTask) {
+                stringValue = 'first'
+            }
+            
+            task second(type: DoItProfiledTask) {
+                stringValue = 'second'
+            }
+        '''.stripIndent(true)
+
+        when:
+        def stdout = runTasksSuccessfully('first', 'second').standardOutput
+
+        then:
+        stdout.contains 'integtest.DoItProfiled: 2 work items, average ms submitting'
+    }
+
+    def 'traced work items are written as a chrome trace'() {
+        // language=gradle
+        buildFile << '''
+            import integtest.DoItTraced.DoItTracedTask
+            
+            task first(type: DoItTracedTask) {
+                stringValue = 'first'
+            }
+            
+            task second(type: DoItTracedTask) {
+                stringValue = 'second'
+            }
+        '''.stripIndent(true)
+
+        when:
+        def stdout = runTasksSuccessfully('first', 'second').standardOutput
+
+        then:
+        stdout.contains 'integtest.DoItTraced: wrote a trace of 2 work items to'
+        def trace = file('build/auto-parallelizable/traces/integtest.DoItTraced.json').text
+        trace.contains '"name":":first"'
+        trace.contains '"name":":second"'
+    }
+
+    def 'work items emit jfr events'() {
+        file('sources/a.txt') << 'abc'
+        file('sources/b.txt') << 'de'
+
+        // language=gradle
+        buildFile << '''
+            import integtest.DoItJfr.DoItJfrTask
+            import jdk.jfr.Recording
+            
+            def recording = new Recording()
+            recording.enable('integtest.DoItJfrWorkItemEvent')
+            recording.start()
+            
+            task doIt(type: DoItJfrTask) {
+                sources.from(fileTree('sources'))
+            }
+            
+            task dumpRecording {
+                dependsOn doIt
+                doLast {
+                    recording.stop()
+                    recording.dump(file('recording.jfr').toPath())
+                }
+            }
+        '''.stripIndent(true)
+
+        when:
+        runTasksSuccessfully('dumpRecording')
+
+        then:
+        def events = RecordingFile.readAllEvents(file('recording.jfr').toPath())
+        events.size() == 1
+        events[0].getString('taskPath') == ':doIt'
+        events[0].getLong('inputFiles') == 2
+        events[0].getLong('inputBytes') == 5
+    }
+
+    def 'allocations of work items in worker processes are summed up at the end of the build'() {
+        // language=gradle
+        buildFile << '''
+            import integtest.DoItAllocating.DoItAllocatingTask
+            
+            task first(type: DoItAllocatingTask) {
+                stringValue = 'first'
+            }
+            
+            task second(type: DoItAllocatingTask) {
+                stringValue = 'second'
+            }
+        '''.stripIndent(true)
+
+        when:
+        def stdout = runTasksSuccessfully('first', 'second').standardOutput
+
+        then:
+        stdout.contains 'integtest.DoItAllocating: 2 work items allocated'
+        file('build/auto-parallelizable/allocations/integtest.DoItAllocating').list().length == 0
+    }
+
+    def 'batched tasks run their actions in batches'() {
+        // language=gradle
+        buildFile << '''
+            import integtest.DoItBatched.DoItBatchedTask
+            
+            task first(type: DoItBatchedTask) {
+                stringValue = 'first'
+            }
+            
+            task second(type: DoItBatchedTask) {
+                stringValue = 'second'
+            }
+            
+            task third(type: DoItBatchedTask) {
+                stringValue = 'third'
+            }
+        '''.stripIndent(true)
+
+        when:
+        def stdout = runTasksSuccessfully('first', 'second', 'third', '--max-workers=4').standardOutput
+
+        then:
+        stdout.count('batch of ') == 1
+        stdout.contains 'batch of 3'
+        stdout.contains 'string: first'
+        stdout.contains 'string: second'
+        stdout.contains 'string: third'
+    }
+
+    def 'small tasks run inline and empty tasks are skipped'() {
+        // language=gradle
+        buildFile << '''
+            import integtest.DoItShortcut.DoItShortcutTask
+            
+            task empty(type: DoItShortcutTask) {
+                stringValue = ''
+            }
+            
+            task small(type: DoItShortcutTask) {
+                stringValue = 'small'
+            }
+            
+            task large(type: DoItShortcutTask) {
+                stringValue = 'larger than ten characters'
+            }
+        '''.stripIndent(true)
+
+        when:
+        def result = runTasksSuccessfully('empty', 'small', 'large')
+        def stdout = result.standardOutput
+
+        then:
+        !stdout.contains('string: []')
+        result.wasUpToDate(':empty')
+        stdout.contains 'string: [small]'
+        !result.wasUpToDate(':small')
+        stdout.contains 'string: [larger than ten characters]'
+    }
+
+    def 'cacheable tasks are restored from the build cache'() {
+        file('input.txt') << 'text'
+
+        // language=gradle
+        settingsFile << '''
+            buildCache {
+                local {
+                    directory = file('build-cache')
+                }
+            }
+        '''.stripIndent(true)
+
+        // language=gradle
+        buildFile << '''
+            import integtest.DoItCacheable.DoItCacheableTask
+            
+            task doIt(type: DoItCacheableTask) {
+                prefix = file('prefix').absolutePath
+                input = file('input.txt')
+                output = file('build/output.txt')
+            }
+        '''.stripIndent(true)
+
+        when:
+        def firstStdout = runTasksSuccessfully('doIt', '--build-cache').standardOutput
+        file('build/output.txt').delete()
+        def secondStdout = runTasksSuccessfully('doIt', '--build-cache').standardOutput
+
+        then:
+        firstStdout.contains 'prefixing: input.txt'
+        firstStdout.contains 'the @Input prefix is the absolute path'
+
+        !secondStdout.contains('prefixing:')
+        file('build/output.txt').text.endsWith 'text'
+    }
+
+    def 'shared resources are built once per build'() {
+        // language=gradle
+        buildFile << '''
+            import integtest.DoItShared.DoItSharedTask
+            
+            task first(type: DoItSharedTask) {
+                schema = 'orders'
+            }
+            
+            task second(type: DoItSharedTask) {
+                schema = 'orders'
+            }
+        '''.stripIndent(true)
+
+        when:
+        def stdout = runTasksSuccessfully('first', 'second').standardOutput
+
+        then:
+        stdout.count('building: orders') == 1
+        stdout.count('using: ORDERS') == 2
+    }
+
+    def 'work items read memory-mapped input files'() {
+        file('descriptors.bin') << 'descriptors'
+
+        // language=gradle
+        buildFile << '''
+            import integtest.DoItMapped.DoItMappedTask
+            
+            task first(type: DoItMappedTask) {
+                input = file('descriptors.bin')
+            }
+            
+            task second(type: DoItMappedTask) {
+                input = file('descriptors.bin')
+            }
+        '''.stripIndent(true)
+
+        when:
+        def stdout = runTasksSuccessfully('first', 'second').standardOutput
+
+        then:
+        stdout.count('mapped: descriptors') == 2
+    }
+
+    def '@Incremental properties only submit changed files'() {
+        file('sources/a.txt') << 'a'
+        file('sources/b.txt') << 'b'
+        file('sources/c.txt') << 'c'
+
+        // language=gradle
+        buildFile << '''
+            import integtest.DoItIncremental.DoItIncrementalTask
+            
+            task doIt(type: DoItIncrementalTask) {
+                sources.from(fileTree('sources'))
+                output = file('output')
+            }
+        '''.stripIndent(true)
+
+        when:
+        def firstStdout = runTasksSuccessfully('doIt').standardOutput
+
+        file('sources/b.txt') << 'changed'
+        file('sources/c.txt').delete()
+
+        def secondStdout = runTasksSuccessfully('doIt').standardOutput
+
+        then:
+        firstStdout.contains 'processed: a.txt'
+        firstStdout.contains 'processed: b.txt'
+        firstStdout.contains 'processed: c.txt'
+
+        !secondStdout.contains('processed: a.txt')
+        secondStdout.contains 'processed: b.txt'
+        secondStdout.contains 'removed: c.txt'
+        !file('output/c.txt').exists()
+    }
+
     def 'make sure it is incremental'() {
         /* language=gradle */
         buildFile << '''